@@ -272,12 +272,14 @@ public class Vars implements Loadable{
     public static MapEditor editor;
     public static AvoidanceProcess avoidance;
     public static GameService service = new GameService();
+    public static TickProfiler profiler = new TickProfiler();
 
     public static Universe universe;
     public static World world;
     public static Maps maps;
     public static WaveSpawner spawner;
     public static BlockIndexer indexer;
+    public static HarvestIndex harvestIndex;
     public static Pathfinder pathfinder;
     public static ControlPathfinder controlPath;
     public static FogControl fogControl;
@@ -351,6 +353,7 @@ public class Vars implements Loadable{
         maps = new Maps();
         spawner = new WaveSpawner();
         indexer = new BlockIndexer();
+        harvestIndex = new HarvestIndex();
         pathfinder = new Pathfinder();
         controlPath = new ControlPathfinder();
         fogControl = new FogControl();
@@ -10,13 +10,15 @@ import java.util.*;
 
 import static mindustry.Vars.*;
 
+/**
+ * Grid A* over world tiles. All search state is kept in a reusable per-thread {@link AstarContext},
+ * so calls do not allocate and can run on several threads at once.
+ * The returned path is owned by the calling thread and is only valid until its next call.
+ */
 public class Astar{
     public static final DistanceHeuristic manhattan = (x1, y1, x2, y2) -> Math.abs(x1 - x2) + Math.abs(y1 - y2);
 
-    private static final Seq<Tile> out = new Seq<>();
-    private static final PQueue<Tile> queue = new PQueue<>(200 * 200 / 4, (a, b) -> 0);
-    private static float[] costs;
-    private static byte[][] rotations;
+    private static final ThreadLocal<AstarContext> contexts = Threads.local(AstarContext::new);
 
     public static Seq<Tile> pathfind(Tile from, Tile to, TileHeuristic th, Boolf<Tile> passable){
         return pathfind(from.x, from.y, to.x, to.y, th, manhattan, passable);
@@ -27,67 +29,265 @@ public class Astar{
     }
 
     public static Seq<Tile> pathfind(int startX, int startY, int endX, int endY, TileHeuristic th, DistanceHeuristic dh, Boolf<Tile> passable){
-        Tiles tiles = world.tiles;
+        return pathfind(startX, startY, endX, endY, th, dh, passable, false, false);
+    }
 
-        Tile start = tiles.getn(startX, startY);
-        Tile end = tiles.getn(endX, endY);
+    /**
+     * @param cliffAware if true, steps blocked by {@link CliffLayerData#blocks(int, int, int, int)} are not taken.
+     * @param jumpPoints if true, straight runs of tiles with the same cost are skipped with jump point search instead of being expanded one by one.
+     * This is much faster on open terrain, and finds optimal paths when the step cost only depends on the target tile.
+     * Paths may differ from the ones found without it.
+     */
+    public static Seq<Tile> pathfind(int startX, int startY, int endX, int endY, TileHeuristic th, DistanceHeuristic dh, Boolf<Tile> passable, boolean cliffAware, boolean jumpPoints){
+        AstarContext context = contexts.get();
 
-        GridBits closed = new GridBits(tiles.width, tiles.height);
+        //a heuristic or passability check may pathfind on its own; don't clobber the outer search
+        if(context.busy){
+            context = new AstarContext();
+        }
 
-        if(costs == null || costs.length != tiles.width * tiles.height){
-            costs = new float[tiles.width * tiles.height];
+        context.busy = true;
+        try{
+            return context.pathfind(startX, startY, endX, endY, th, dh, passable, cliffAware, jumpPoints);
+        }finally{
+            context.busy = false;
         }
+    }
 
-        Arrays.fill(costs, 0);
+    /** Search state of a single thread. Visited tiles are marked with the current search generation, so nothing has to be cleared between searches. */
+    static class AstarContext{
+        final PathfindQueue queue = new PathfindQueue(200 * 200 / 4);
+        final Seq<Tile> out = new Seq<>();
 
-        queue.clear();
-        queue.comparator = Structs.comparingFloat(a -> costs[a.array()] + dh.cost(a.x, a.y, end.x, end.y));
-        queue.add(start);
-        if(rotations == null || rotations.length != world.width() || rotations[0].length != world.height()){
-            rotations = new byte[world.width()][world.height()];
-        }
+        int[] visited = {};
+        float[] costs = {};
+        int[] parents = {};
+        int generation;
+        boolean busy;
 
-        boolean found = false;
-        while(!queue.empty()){
-            Tile next = queue.poll();
-            float baseCost = costs[next.array()];
-            if(next == end){
-                found = true;
-                break;
-            }
-            closed.set(next.x, next.y);
-            for(Point2 point : Geometry.d4){
-                int newx = next.x + point.x, newy = next.y + point.y;
-                if(Structs.inBounds(newx, newy, tiles.width, tiles.height)){
-                    Tile child = tiles.getn(newx, newy);
-                    if(passable.get(child)){
-                        float newCost = th.cost(next, child) + baseCost;
-                        if(!closed.get(child.x, child.y)){
-                            closed.set(child.x, child.y);
-                            rotations[child.x][child.y] = child.relativeTo(next.x, next.y);
-                            costs[child.array()] = newCost;
-                            queue.add(child);
+        //current search parameters, used by the jump functions
+        Tiles tiles;
+        TileHeuristic th;
+        Boolf<Tile> passable;
+        boolean cliffAware;
+        int endPos;
+        /** cost of the last successful jump */
+        float jumpCost;
+
+        Seq<Tile> pathfind(int startX, int startY, int endX, int endY, TileHeuristic th, DistanceHeuristic dh, Boolf<Tile> passable, boolean cliffAware, boolean jumpPoints){
+            Tiles tiles = world.tiles;
+            int width = tiles.width, height = tiles.height;
+
+            Tile start = tiles.getn(startX, startY);
+            Tile end = tiles.getn(endX, endY);
+            int startPos = start.array();
+
+            begin(width * height);
+            this.tiles = tiles;
+            this.th = th;
+            this.passable = passable;
+            this.cliffAware = cliffAware;
+            this.endPos = end.array();
+
+            int gen = generation;
+            int[] visited = this.visited, parents = this.parents;
+            float[] costs = this.costs;
+
+            costs[startPos] = 0;
+            parents[startPos] = startPos;
+
+            queue.clear();
+            queue.add(startPos, dh.cost(start.x, start.y, end.x, end.y));
+
+            boolean found = false;
+
+            if(jumpPoints){
+                //standard A*: tiles are closed when they are polled, and costs may be lowered until then
+                visited[startPos] = gen;
+
+                while(!queue.empty()){
+                    int pos = queue.poll();
+                    if(pos == endPos){
+                        found = true;
+                        break;
+                    }
+
+                    //stale queue entry
+                    if(visited[pos] == -gen) continue;
+                    visited[pos] = -gen;
+
+                    int x = pos % width, y = pos / width, parent = parents[pos];
+                    float baseCost = costs[pos];
+
+                    for(int dir = 0; dir < 4; dir++){
+                        int dx = Geometry.d4x(dir), dy = Geometry.d4y(dir);
+
+                        //never jump back towards the parent
+                        if(parent != pos && Integer.signum(parent % width - x) == dx && Integer.signum(parent / width - y) == dy) continue;
+
+                        int jump = jump(x, y, dx, dy);
+                        if(jump == -1 || visited[jump] == -gen) continue;
+
+                        float newCost = baseCost + jumpCost;
+                        if(visited[jump] != gen || newCost < costs[jump]){
+                            visited[jump] = gen;
+                            costs[jump] = newCost;
+                            parents[jump] = pos;
+                            queue.add(jump, newCost + dh.cost(jump % width, jump / width, end.x, end.y));
+                        }
+                    }
+                }
+            }else{
+                //tiles are closed as soon as they are discovered; this keeps paths identical to what map generators have always produced
+                while(!queue.empty()){
+                    int pos = queue.poll();
+                    if(pos == endPos){
+                        found = true;
+                        break;
+                    }
+
+                    Tile next = tiles.geti(pos);
+                    float baseCost = costs[pos];
+                    visited[pos] = gen;
+
+                    for(Point2 point : Geometry.d4){
+                        int newx = next.x + point.x, newy = next.y + point.y;
+                        if(Structs.inBounds(newx, newy, width, height)){
+                            int childPos = newx + newy * width;
+                            if(visited[childPos] == gen) continue;
+
+                            Tile child = tiles.geti(childPos);
+                            if(passable.get(child) && !(cliffAware && CliffLayerData.blocks(CliffLayerData.cliff(next), CliffLayerData.cliff(child), point.x, point.y))){
+                                float newCost = th.cost(next, child) + baseCost;
+                                visited[childPos] = gen;
+                                parents[childPos] = pos;
+                                costs[childPos] = newCost;
+                                queue.add(childPos, newCost + dh.cost(newx, newy, end.x, end.y));
+                            }
                         }
                     }
                 }
             }
+
+            out.clear();
+
+            if(found){
+                int current = endPos;
+                while(current != startPos){
+                    int parent = parents[current];
+                    int x = current % width, y = current / width;
+                    int sx = Integer.signum(parent % width - x), sy = Integer.signum(parent / width - y);
+
+                    //jumps are always straight lines, so fill in the skipped tiles
+                    while(current != parent){
+                        out.add(tiles.geti(current));
+                        x += sx;
+                        y += sy;
+                        current = x + y * width;
+                    }
+                }
+
+                out.reverse();
+            }
+
+            this.tiles = null;
+            this.th = null;
+            this.passable = null;
+
+            return out;
         }
 
-        out.clear();
+        /** Prepares the arrays for a search over the specified amount of tiles. */
+        void begin(int size){
+            if(visited.length != size){
+                visited = new int[size];
+                costs = new float[size];
+                parents = new int[size];
+                generation = 0;
+            }
 
-        if(!found) return out;
+            //closed tiles of the jump point search are marked with the negative generation, so wrap before that overflows
+            if(++generation == Integer.MAX_VALUE){
+                Arrays.fill(visited, 0);
+                generation = 1;
+            }
+        }
 
-        Tile current = end;
-        while(current != start){
-            out.add(current);
+        /** @return whether a step from the first tile to the second one can be taken. */
+        boolean canStep(Tile from, Tile to, int dx, int dy){
+            return passable.get(to) && !(cliffAware && CliffLayerData.blocks(CliffLayerData.cliff(from), CliffLayerData.cliff(to), dx, dy));
+        }
 
-            byte rot = rotations[current.x][current.y];
-            current = tiles.getn(current.x + Geometry.d4x[rot], current.y + Geometry.d4y[rot]);
+        /** @return 0 for impassable tiles, 1 for passable tiles of the given cost without cliffs, and 2 for any other passable tile. */
+        int side(int x, int y, float cost){
+            if(!Structs.inBounds(x, y, tiles.width, tiles.height)) return 0;
+            Tile tile = tiles.getn(x, y);
+            if(!passable.get(tile)) return 0;
+            return (!cliffAware || CliffLayerData.cliff(tile) == CliffLayerData.none) && th.cost(tile) == cost ? 1 : 2;
         }
 
-        out.reverse();
+        /** @return whether a path may need to turn towards a side tile, because it differs from the previous side tile or is not part of the uniform region. */
+        boolean turns(int x, int y, int prevX, int prevY, float cost){
+            int side = side(x, y, cost);
+            return side == 2 || side != side(prevX, prevY, cost);
+        }
+
+        /**
+         * Jumps from a tile in a straight line. Horizontal jumps stop where the tiles to their sides change, vertical jumps additionally stop where a horizontal jump would find something.
+         * Tiles with a different cost than the first step, or with cliffs, always end a jump, and so do tiles next to them.
+         * @return the position of the jump point, or -1 if the jump ran into a wall. The cost of the jump is stored in {@link #jumpCost}.
+         */
+        int jump(int x, int y, int dx, int dy){
+            int width = tiles.width, height = tiles.height;
+            Tile from = tiles.getn(x, y);
+            float total = 0f, stepCost = 0f;
+            boolean first = true;
+
+            while(true){
+                int nx = x + dx, ny = y + dy;
+                if(!Structs.inBounds(nx, ny, width, height)) return -1;
 
-        return out;
+                Tile next = tiles.getn(nx, ny);
+                if(!canStep(from, next, dx, dy)) return -1;
+
+                float cost = th.cost(from, next);
+                if(first){
+                    stepCost = cost;
+                    first = false;
+                }
+
+                total += cost;
+                int pos = next.array();
+
+                if(pos == endPos || cost != stepCost || (cliffAware && CliffLayerData.cliff(next) != CliffLayerData.none)){
+                    jumpCost = total;
+                    return pos;
+                }
+
+                //the tiles on either side changed; a path may need to turn here
+                if(dx != 0){
+                    if(turns(nx, ny + 1, x, y + 1, stepCost) || turns(nx, ny - 1, x, y - 1, stepCost)){
+                        jumpCost = total;
+                        return pos;
+                    }
+                }else{
+                    if(turns(nx + 1, ny, nx + 1, y, stepCost) || turns(nx - 1, ny, nx - 1, y, stepCost)){
+                        jumpCost = total;
+                        return pos;
+                    }
+
+                    //vertical jumps turn wherever a horizontal jump finds anything
+                    if(jump(nx, ny, 1, 0) != -1 || jump(nx, ny, -1, 0) != -1){
+                        jumpCost = total;
+                        return pos;
+                    }
+                }
+
+                from = next;
+                x = nx;
+                y = ny;
+            }
+        }
     }
 
     public interface DistanceHeuristic{
@@ -8,6 +8,7 @@ import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import mindustry.annotations.Annotations.*;
+import mindustry.async.*;
 import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.game.EventType.*;
@@ -86,6 +87,9 @@ public class ControlPathfinder implements Runnable{
 
     static final int clusterSize = 12;
 
+    /** temporary search state for inner edge A*, one per thread */
+    private static final ThreadLocal<SearchScratch> scratch = Threads.local(SearchScratch::new);
+
     static final int[] offsets = {
     1, 0, //right: bottom to top
     0, 1, //top: left to right
@@ -112,8 +116,6 @@ public class ControlPathfinder implements Runnable{
     final Cluster[][][] clusters = new Cluster[256][][];
     final int cwidth = Mathf.ceil((float)world.width() / clusterSize), cheight = Mathf.ceil((float)world.height() / clusterSize);
 
-    //temporarily used for resolving connections for intra-edges
-    final IntSet usedEdges = new IntSet();
     //tasks to run on pathfinding thread
     final TaskQueue queue = new TaskQueue();
 
@@ -122,21 +124,21 @@ public class ControlPathfinder implements Runnable{
 
     final Seq<PathRequest> threadPathRequests = new Seq<>(false);
 
-    //TODO: very dangerous usage;
-    //TODO - it is accessed from the main thread
-    //TODO - it is written to on the pathfinding thread
+    //PATHFINDING THREAD ONLY - the main thread reads publishedFields instead
     //maps position in world in (x + y * width format) | path type | team (bitpacked to long with FieldIndex.get) to a cache of flow fields
     final LongMap<FieldCache> fields = new LongMap<>();
+    //incremented every time a field is added to or removed from the map above
+    int fieldsVersion, publishedFieldsVersion;
+    /** Copy of {@link #fields} for the main thread. Replaced by the pathfinding thread when the version changes, never modified after being published. */
+    volatile LongMap<FieldCache> publishedFields = new LongMap<>();
     //MAIN THREAD ONLY
     final Seq<FieldCache> fieldList = new Seq<>(false);
 
-    //these are for inner edge A* (temporary!)
-    final IntFloatMap innerCosts = new IntFloatMap();
-    final PathfindQueue innerFrontier = new PathfindQueue();
-
     //ONLY modify on pathfinding thread.
     final IntSet clustersToUpdate = new IntSet();
     final IntSet clustersToInnerUpdate = new IntSet();
+    //PATHFINDING THREAD - reused task list for the background pool
+    final Seq<Runnable> tasks = new Seq<>(false);
 
     //PATHFINDING THREAD - requests that should be recomputed
     final ObjectSet<PathRequest> invalidRequests = new ObjectSet<>();
@@ -191,7 +193,12 @@ public class ControlPathfinder implements Runnable{
         //frontier for flow fields
         final IntQueue frontier = new IntQueue();
         //maps cluster index to field weights; 0 means uninitialized
+        //PATHFINDING THREAD ONLY - the weight arrays are shared with the published map, so the main thread sees them fill up
         final IntMap<int[]> fields = new IntMap<>();
+        //incremented every time a cluster is added to the map above
+        int version, publishedVersion;
+        //copy of the cluster map for the main thread; replaced, never modified
+        volatile IntMap<int[]> published = new IntMap<>();
         //packed (goalPos | costId | team) long key to use in the global fields map
         final long mapKey;
 
@@ -209,6 +216,14 @@ public class ControlPathfinder implements Runnable{
         }
     }
 
+    static class SearchScratch{
+        //used for resolving connections for intra-edges
+        final IntSet usedEdges = new IntSet();
+        //these are for inner edge A*
+        final IntFloatMap costs = new IntFloatMap();
+        final PathfindQueue frontier = new PathfindQueue();
+    }
+
     static class Cluster{
         IntSeq[] portals = new IntSeq[4];
         //maps rotation + index of portal to list of IntraEdge objects
@@ -249,7 +264,7 @@ public class ControlPathfinder implements Runnable{
                 //skipped N update -> drop it
                 if(field.lastUpdateId <= state.updateId - 30){
                     //make sure it's only modified on the main thread...? but what about calling get() on this thread??
-                    controlPath.queue.post(() -> controlPath.fields.remove(field.mapKey));
+                    controlPath.queue.post(() -> controlPath.removeField(field.mapKey));
                     Time.run(0f, () -> controlPath.fieldList.remove(field));
                 }
             }
@@ -316,7 +331,7 @@ public class ControlPathfinder implements Runnable{
 
                     for(var fields : controlPath.fieldList){
                         try{
-                            for(var entry : fields.fields){
+                            for(var entry : fields.published){
                                 int cx = entry.key % controlPath.cwidth, cy = entry.key / controlPath.cwidth;
                                 for(int y = 0; y < clusterSize; y++){
                                     for(int x = 0; x < clusterSize; x++){
@@ -546,6 +561,7 @@ public class ControlPathfinder implements Runnable{
     void updateInnerEdges(int team, PathCost cost, int cx, int cy, Cluster cluster){
         int minX = cx * clusterSize, minY = cy * clusterSize, maxX = Math.min(minX + clusterSize - 1, wwidth - 1), maxY = Math.min(minY + clusterSize - 1, wheight - 1);
 
+        IntSet usedEdges = scratch.get().usedEdges;
         usedEdges.clear();
 
         //clear all connections, since portals changed, they need to be recomputed.
@@ -634,8 +650,9 @@ public class ControlPathfinder implements Runnable{
 
     /** @return -1 if no path was found */
     float innerAstar(int team, PathCost cost, int minX, int minY, int maxX, int maxY, int startPos, int goalPos, int goalX1, int goalY1, int goalX2, int goalY2){
-        var frontier = innerFrontier;
-        var costs = innerCosts;
+        var search = scratch.get();
+        var frontier = search.frontier;
+        var costs = search.costs;
 
         frontier.clear();
         costs.clear();
@@ -973,6 +990,7 @@ public class ControlPathfinder implements Runnable{
 
         if(!fields.containsKey(key)){
             fields.put(key, new int[clusterSize * clusterSize]);
+            cache.version++;
 
             if(addingFrontier){
                 for(int dir = 0; dir < 4; dir++){
@@ -1044,6 +1062,7 @@ public class ControlPathfinder implements Runnable{
         if(cache == null){
             cache = new FieldCache(pcost, costId, team, goalPos);
             fields.put(cache.mapKey, cache);
+            fieldsVersion++;
             FieldCache fcache = cache;
             //register field in main thread for iteration
             Core.app.post(() -> fieldList.add(fcache));
@@ -1150,12 +1169,7 @@ public class ControlPathfinder implements Runnable{
             request.lastUpdateId = state.updateId;
 
             Tile initialTileOn = tileOn;
-            //TODO: should fields be accessible from this thread?
-            FieldCache fieldCache = null;
-            try{
-                fieldCache = fields.get(fieldKey);
-            }catch(ArrayIndexOutOfBoundsException ignored){ //TODO fix this, rare crash due to remove() elsewhere
-            }
+            FieldCache fieldCache = publishedFields.get(fieldKey);
             if(fieldCache == null) fieldCache = request.oldCache;
 
             if(fieldCache != null && tileOn != null){
@@ -1286,20 +1300,14 @@ public class ControlPathfinder implements Runnable{
     }
 
     private int getCost(FieldCache cache, int x, int y, boolean requeue){
-        try{
-            int[] field = cache.fields.get(x / clusterSize + (y / clusterSize) * cwidth);
-            if(field == null){
-                if(!requeue) return 0;
-                //request a new flow cluster if one wasn't found; this may be a spammed a bit, but the function will return early once it's created the first time
-                queue.post(() -> addFlowCluster(cache, x / clusterSize, y / clusterSize, true));
-                return 0;
-            }
-            return field[(x % clusterSize) + (y % clusterSize) * clusterSize];
-        }catch(ArrayIndexOutOfBoundsException e){
-            //TODO: this crashes because the fields are being added while they're accessed. really bad. needs a long-term solution and some way to cache the map lookup results.
-            //using an array instead of a map would be nice, but that can mean something like 2500 entries in a sparse array, which is pretty terrible...
+        int[] field = cache.published.get(x / clusterSize + (y / clusterSize) * cwidth);
+        if(field == null){
+            if(!requeue) return 0;
+            //request a new flow cluster if one wasn't found; this may be a spammed a bit, but the function will return early once it's created the first time
+            queue.post(() -> addFlowCluster(cache, x / clusterSize, y / clusterSize, true));
             return 0;
         }
+        return field[(x % clusterSize) + (y % clusterSize) * clusterSize];
     }
 
     private static boolean raycast(int team, PathCost type, int x1, int y1, int x2, int y2){
@@ -1464,7 +1472,41 @@ public class ControlPathfinder implements Runnable{
 
     }
 
-    private void updateClustersComplete(int clusterIndex){
+    /** Rebuilds all queued clusters on the background pool. Clusters share portals with their 4 neighbours, so only clusters of the same checkerboard parity are rebuilt at the same time. */
+    void updateClusters(){
+        if(clustersToUpdate.isEmpty() && clustersToInnerUpdate.isEmpty()) return;
+
+        //just in case: don't redundantly update inner clusters after you've recalculated it entirely
+        clustersToUpdate.each(clustersToInnerUpdate::remove);
+
+        for(int parity = 0; parity < 2; parity++){
+            int p = parity;
+
+            clustersToUpdate.each(cluster -> {
+                if(clusterParity(cluster) == p) tasks.add(() -> updateClusters(cluster, true));
+            });
+
+            clustersToInnerUpdate.each(cluster -> {
+                //only recompute the inner links
+                if(clusterParity(cluster) == p) tasks.add(() -> updateClusters(cluster, false));
+            });
+
+            runTasks();
+        }
+
+        //requests are only invalidated on this thread
+        clustersToUpdate.each(this::clustersChanged);
+        clustersToInnerUpdate.each(this::clustersChanged);
+
+        clustersToInnerUpdate.clear();
+        clustersToUpdate.clear();
+    }
+
+    private int clusterParity(int clusterIndex){
+        return (clusterIndex % cwidth + clusterIndex / cwidth) & 1;
+    }
+
+    private void updateClusters(int clusterIndex, boolean complete){
         for(int team = 0; team < clusters.length; team++){
             var dim1 = clusters[team];
             if(dim1 != null){
@@ -1473,8 +1515,11 @@ public class ControlPathfinder implements Runnable{
                     if(dim2 != null){
                         var cluster = dim2[clusterIndex];
                         if(cluster != null){
-                            updateCluster(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth);
-                            clusterChanged(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth);
+                            if(complete){
+                                updateCluster(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth);
+                            }else{
+                                updateInnerEdges(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth, cluster);
+                            }
                         }
                     }
                 }
@@ -1482,24 +1527,58 @@ public class ControlPathfinder implements Runnable{
         }
     }
 
-    private void updateClustersInner(int clusterIndex){
+    private void clustersChanged(int clusterIndex){
         for(int team = 0; team < clusters.length; team++){
             var dim1 = clusters[team];
             if(dim1 != null){
                 for(int pathCost = 0; pathCost < dim1.length; pathCost++){
                     var dim2 = dim1[pathCost];
-                    if(dim2 != null){
-                        var cluster = dim2[clusterIndex];
-                        if(cluster != null){
-                            updateInnerEdges(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth, cluster);
-                            clusterChanged(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth);
-                        }
+                    if(dim2 != null && dim2[clusterIndex] != null){
+                        clusterChanged(team, pathCost, clusterIndex % cwidth, clusterIndex / cwidth);
                     }
                 }
             }
         }
     }
 
+    /** Runs all queued tasks on the {@link AsyncCore} background workers and waits for them to finish. */
+    private void runTasks(){
+        try{
+            AsyncCore.runAllBackground(tasks);
+        }finally{
+            tasks.clear();
+        }
+    }
+
+    private void removeField(long mapKey){
+        if(fields.remove(mapKey) != null){
+            fieldsVersion++;
+        }
+    }
+
+    /** Publishes copies of every field map that changed since the last call, so the main thread can read them without locking. */
+    private void publishFields(){
+        fields.eachValue(cache -> {
+            if(cache != null && cache.version != cache.publishedVersion){
+                var copy = new IntMap<int[]>(cache.fields.size);
+                for(var entry : cache.fields){
+                    copy.put(entry.key, entry.value);
+                }
+                cache.published = copy;
+                cache.publishedVersion = cache.version;
+            }
+        });
+
+        if(fieldsVersion != publishedFieldsVersion){
+            var copy = new LongMap<FieldCache>(fields.size);
+            fields.eachValue(cache -> {
+                if(cache != null) copy.put(cache.mapKey, cache);
+            });
+            publishedFields = copy;
+            publishedFieldsVersion = fieldsVersion;
+        }
+    }
+
     @Override
     public void run(){
         long lastInvalidCheck = Time.millis() + invalidateCheckInterval;
@@ -1510,20 +1589,7 @@ public class ControlPathfinder implements Runnable{
                 if(state.isPlaying()){
                     queue.run();
 
-                    clustersToUpdate.each(cluster -> {
-                        updateClustersComplete(cluster);
-
-                        //just in case: don't redundantly update inner clusters after you've recalculated it entirely
-                        clustersToInnerUpdate.remove(cluster);
-                    });
-
-                    clustersToInnerUpdate.each(cluster -> {
-                        //only recompute the inner links
-                        updateClustersInner(cluster);
-                    });
-
-                    clustersToInnerUpdate.clear();
-                    clustersToUpdate.clear();
+                    updateClusters();
 
                     //periodically check for invalidated paths
                     if(Time.timeSinceMillis(lastInvalidCheck) > invalidateCheckInterval){
@@ -1548,7 +1614,7 @@ public class ControlPathfinder implements Runnable{
                                 if(field.frontier.isEmpty()){
 
                                     //remove the field, to be recalculated next update once recalculatePath is processed
-                                    fields.remove(field.mapKey);
+                                    removeField(field.mapKey);
                                     Core.app.post(() -> fieldList.remove(field));
 
                                     //once the field is invalidated, make sure that all the requests that have it stored in their 'old' field, so units don't stutter during recalculations
@@ -1574,12 +1640,15 @@ public class ControlPathfinder implements Runnable{
                         }
                     }
 
-                    //each update time (not total!) no longer than maxUpdate
+                    //each update time (not total!) no longer than maxUpdate; fields never share state, so they are expanded in parallel
                     fields.eachValue(cache -> {
-                        if(cache != null){
-                            updateFields(cache, maxUpdate);
+                        if(cache != null && !cache.frontier.isEmpty()){
+                            tasks.add(() -> updateFields(cache, maxUpdate));
                         }
                     });
+                    runTasks();
+
+                    publishFields();
                 }
 
                 try{
@@ -0,0 +1,256 @@
+package mindustry.ai;
+
+import arc.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.content.*;
+import mindustry.game.EventType.*;
+import mindustry.game.*;
+import mindustry.gen.*;
+import mindustry.world.*;
+import mindustry.world.blocks.environment.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Indexes harvestable resource nodes: crystal mineral walls and the center tiles of complete steam vents.
+ * Nodes are bucketed into quadrants like {@link BlockIndexer} ores, so nearest-node queries only look at quadrants that can still contain a better result.
+ * Also tracks how many harvesters target each crystal (its saturation), which {@link mindustry.ai.types.HarvestAI} keeps up to date.
+ */
+public class HarvestIndex{
+    /** Size of one quadrant. */
+    private static final int quadrantSize = 20;
+
+    private int quadWidth, quadHeight;
+    /** Crystal positions by quadrant index. */
+    private IntSeq[] crystals = {};
+    /** Vent center positions by quadrant index. */
+    private IntSeq[] vents = {};
+    /** Lowest saturation of any crystal in each quadrant. */
+    private int[] minSaturation = {};
+    /** Maps crystal position to the amount of harvesters targeting it. Crystals without any are not stored. */
+    private final IntIntMap saturation = new IntIntMap();
+
+    //state of the current query
+    private Tile best;
+    private int bestCount;
+    private float bestDst;
+
+    public HarvestIndex(){
+        Events.on(WorldLoadEvent.class, event -> rebuild());
+
+        Events.on(TileChangeEvent.class, event -> updateCrystal(event.tile));
+
+        Events.on(TileFloorChangeEvent.class, event -> {
+            //a vent center depends on the floor of every tile around it
+            for(int dx = -1; dx <= 1; dx++){
+                for(int dy = -1; dy <= 1; dy++){
+                    Tile other = event.tile.nearby(dx, dy);
+                    if(other != null) updateVent(other);
+                }
+            }
+        });
+    }
+
+    private void rebuild(){
+        quadWidth = Mathf.ceil(world.width() / (float)quadrantSize);
+        quadHeight = Mathf.ceil(world.height() / (float)quadrantSize);
+        crystals = new IntSeq[quadWidth * quadHeight];
+        vents = new IntSeq[quadWidth * quadHeight];
+        minSaturation = new int[quadWidth * quadHeight];
+        saturation.clear();
+
+        for(Tile tile : world.tiles){
+            if(isCrystal(tile)) bucket(crystals, tile).add(tile.pos());
+            if(isVentCenter(tile)) bucket(vents, tile).add(tile.pos());
+        }
+    }
+
+    private void updateCrystal(Tile tile){
+        if(crystals.length == 0) return;
+
+        if(isCrystal(tile)){
+            //a new crystal starts without harvesters, which lowers the minimum of its quadrant
+            IntSeq seq = bucket(crystals, tile);
+            if(!seq.contains(tile.pos())){
+                seq.add(tile.pos());
+                updateMinSaturation(quadrant(tile));
+            }
+        }else if(bucket(crystals, tile).removeValue(tile.pos())){
+            saturation.remove(tile.pos(), 0);
+            updateMinSaturation(quadrant(tile));
+        }
+    }
+
+    private void updateVent(Tile tile){
+        if(vents.length == 0) return;
+
+        if(isVentCenter(tile)){
+            bucket(vents, tile).addUnique(tile.pos());
+        }else{
+            bucket(vents, tile).removeValue(tile.pos());
+        }
+    }
+
+    /** Sets the amount of harvesters targeting a crystal. */
+    public void setSaturation(Tile tile, int count){
+        int old = saturation.get(tile.pos(), 0);
+        if(count <= 0){
+            saturation.remove(tile.pos(), 0);
+        }else{
+            saturation.put(tile.pos(), count);
+        }
+
+        if(old != Math.max(count, 0) && crystals.length > 0 && isCrystal(tile)){
+            updateMinSaturation(quadrant(tile));
+        }
+    }
+
+    /** @return the amount of harvesters targeting a crystal. */
+    public int getSaturation(Tile tile){
+        return saturation.get(tile.pos(), 0);
+    }
+
+    /**
+     * Finds the closest crystal to a position. Only crystals at most {@code range} tiles away from the position on each axis are considered.
+     * @param useSaturation if true, crystals with the fewest harvesters are preferred over closer ones.
+     * @param maxSaturation crystals with more harvesters than this are ignored.
+     */
+    public @Nullable Tile findCrystal(float x, float y, int range, boolean useSaturation, int maxSaturation){
+        if(crystals.length == 0) return null;
+
+        int tx = World.toTile(x), ty = World.toTile(y);
+        best = null;
+        bestCount = Integer.MAX_VALUE;
+        bestDst = Float.MAX_VALUE;
+
+        int minQx = Math.max((tx - range) / quadrantSize, 0), maxQx = Math.min((tx + range) / quadrantSize, quadWidth - 1);
+        int minQy = Math.max((ty - range) / quadrantSize, 0), maxQy = Math.min((ty + range) / quadrantSize, quadHeight - 1);
+
+        for(int qx = minQx; qx <= maxQx; qx++){
+            for(int qy = minQy; qy <= maxQy; qy++){
+                int index = qx + qy * quadWidth;
+                IntSeq seq = crystals[index];
+                if(seq == null || seq.isEmpty()) continue;
+
+                int quadCount = useSaturation ? minSaturation[index] : 0;
+                if(quadCount > maxSaturation || quadCount > bestCount) continue;
+                if((!useSaturation || quadCount == bestCount) && quadrantDst(x, y, qx, qy) > bestDst) continue;
+
+                for(int i = 0; i < seq.size; i++){
+                    int pos = seq.items[i];
+                    int px = Point2.x(pos), py = Point2.y(pos);
+                    if(Math.abs(px - tx) > range || Math.abs(py - ty) > range) continue;
+
+                    int count = saturation.get(pos, 0);
+                    if(count > maxSaturation) continue;
+
+                    consider(world.tile(px, py), x, y, useSaturation ? count : 0);
+                }
+            }
+        }
+
+        Tile result = best;
+        best = null;
+        return result;
+    }
+
+    /**
+     * Finds the closest vent with remaining reserves that has a condenser of the specified team on it.
+     * Only vents that have a tile at most {@code range} tiles away from the position on each axis are considered.
+     * @return the center tile of the vent, which holds its data.
+     */
+    public @Nullable Tile findCondenserVent(float x, float y, int range, Team team){
+        if(vents.length == 0) return null;
+
+        int tx = World.toTile(x), ty = World.toTile(y);
+        best = null;
+        bestCount = 0;
+        bestDst = Float.MAX_VALUE;
+
+        //vent tiles extend one tile past their center
+        int reach = range + 1;
+        int minQx = Math.max((tx - reach) / quadrantSize, 0), maxQx = Math.min((tx + reach) / quadrantSize, quadWidth - 1);
+        int minQy = Math.max((ty - reach) / quadrantSize, 0), maxQy = Math.min((ty + reach) / quadrantSize, quadHeight - 1);
+
+        for(int qx = minQx; qx <= maxQx; qx++){
+            for(int qy = minQy; qy <= maxQy; qy++){
+                IntSeq seq = vents[qx + qy * quadWidth];
+                if(seq == null || seq.isEmpty() || quadrantDst(x, y, qx, qy) > bestDst) continue;
+
+                for(int i = 0; i < seq.size; i++){
+                    int pos = seq.items[i];
+                    int px = Point2.x(pos), py = Point2.y(pos);
+                    if(Math.abs(px - tx) > reach || Math.abs(py - ty) > reach) continue;
+
+                    Tile tile = world.tile(px, py);
+                    if(!(tile.floor() instanceof SteamVent vent)) continue;
+
+                    Tile data = vent.dataTile(tile);
+                    if(data == null || (!vent.isInfinite(data) && vent.getReserves(data) <= 0)) continue;
+
+                    Building build = data.build;
+                    if(build == null || build.block != Blocks.ventCondenser || build.team != team) continue;
+
+                    consider(data, x, y, 0);
+                }
+            }
+        }
+
+        Tile result = best;
+        best = null;
+        return result;
+    }
+
+    /** Replaces the current best result if the tile has a lower count, is closer, or ties and comes first in x-major tile order. */
+    private void consider(Tile tile, float x, float y, int count){
+        float dst = Mathf.dst2(x, y, tile.worldx(), tile.worldy());
+        if(best == null || count < bestCount || (count == bestCount && (dst < bestDst ||
+            (dst == bestDst && (tile.x < best.x || (tile.x == best.x && tile.y < best.y)))))){
+            best = tile;
+            bestCount = count;
+            bestDst = dst;
+        }
+    }
+
+    /** @return the squared distance from a position to the closest tile center in a quadrant. */
+    private float quadrantDst(float x, float y, int qx, int qy){
+        float
+        minX = qx * quadrantSize * tilesize, maxX = ((qx + 1) * quadrantSize - 1) * tilesize,
+        minY = qy * quadrantSize * tilesize, maxY = ((qy + 1) * quadrantSize - 1) * tilesize;
+        float dx = x < minX ? minX - x : x > maxX ? x - maxX : 0f;
+        float dy = y < minY ? minY - y : y > maxY ? y - maxY : 0f;
+        return dx * dx + dy * dy;
+    }
+
+    private void updateMinSaturation(int quadrant){
+        IntSeq seq = crystals[quadrant];
+        int min = Integer.MAX_VALUE;
+        if(seq != null){
+            for(int i = 0; i < seq.size; i++){
+                min = Math.min(min, saturation.get(seq.items[i], 0));
+            }
+        }
+        minSaturation[quadrant] = min == Integer.MAX_VALUE ? 0 : min;
+    }
+
+    private IntSeq bucket(IntSeq[] buckets, Tile tile){
+        int index = quadrant(tile);
+        if(buckets[index] == null) buckets[index] = new IntSeq(false, 16);
+        return buckets[index];
+    }
+
+    private int quadrant(Tile tile){
+        return tile.x / quadrantSize + tile.y / quadrantSize * quadWidth;
+    }
+
+    private static boolean isCrystal(Tile tile){
+        return tile.block() instanceof CrystalMineralWall;
+    }
+
+    private static boolean isVentCenter(Tile tile){
+        return tile.floor() instanceof SteamVent vent && vent.checkAdjacent(tile);
+    }
+}
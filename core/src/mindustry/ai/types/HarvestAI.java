@@ -608,134 +608,24 @@ public class HarvestAI extends AIController{
     }
 
     public static @Nullable Tile findNearestCrystalTile(float x, float y, float radius){
-        Tile best = null;
-        float bestDst = Float.MAX_VALUE;
-
-        int range = (int)(radius / tilesize);
-        range = Math.min(range, 100);
-
-        int tx = world.toTile(x);
-        int ty = world.toTile(y);
-
-        for(int dx = -range; dx <= range; dx++){
-            for(int dy = -range; dy <= range; dy++){
-                Tile tile = world.tile(tx + dx, ty + dy);
-                if(tile == null || !(tile.block() instanceof CrystalMineralWall)) continue;
-
-                float dst = Mathf.dst2(x, y, tile.worldx(), tile.worldy());
-                if(dst < bestDst){
-                    bestDst = dst;
-                    best = tile;
-                }
-            }
-        }
-
-        return best;
+        return harvestIndex.findCrystal(x, y, searchRange(radius), false, Integer.MAX_VALUE);
     }
 
     public static @Nullable Tile findNearestGasTile(float x, float y, float radius, Team team){
-        Tile best = null;
-        float bestDst = Float.MAX_VALUE;
-        IntSet visited = new IntSet();
-
-        int range = (int)(radius / tilesize);
-        range = Math.min(range, 100);
-
-        int tx = world.toTile(x);
-        int ty = world.toTile(y);
-
-        for(int dx = -range; dx <= range; dx++){
-            for(int dy = -range; dy <= range; dy++){
-                Tile tile = world.tile(tx + dx, ty + dy);
-                if(tile == null || !(tile.floor() instanceof SteamVent vent)) continue;
-
-                Tile data = vent.dataTile(tile);
-                if(data == null || !vent.checkAdjacent(data)) continue;
-                if(!visited.add(data.pos())) continue;
-
-                if(!vent.isInfinite(data) && vent.getReserves(data) <= 0) continue;
-
-                Building build = data.build;
-                if(build == null || build.block != Blocks.ventCondenser || build.team != team) continue;
-
-                float dst = Mathf.dst2(x, y, data.worldx(), data.worldy());
-                if(dst < bestDst){
-                    bestDst = dst;
-                    best = data;
-                }
-            }
-        }
-
-        return best;
+        return harvestIndex.findCondenserVent(x, y, searchRange(radius), team);
     }
 
     Tile findOreNear(float x, float y, float radius, boolean useCounts){
-        Tile best = null;
-        float bestDst = Float.MAX_VALUE;
-        int bestCount = Integer.MAX_VALUE;
-
-        int range = (int)(radius / tilesize);
-        // Clamp range to prevent searching entire map
-        range = Math.min(range, 100); // Maximum 100 tiles in each direction
-
-        int tx = world.toTile(x);
-        int ty = world.toTile(y);
-
-        for(int dx = -range; dx <= range; dx++){
-            for(int dy = -range; dy <= range; dy++){
-                Tile tile = world.tile(tx + dx, ty + dy);
-                if(tile == null) continue;
-
-                // Check if it's a crystal mineral
-                if(!(tile.block() instanceof CrystalMineralWall)) continue;
-
-                // Check distance
-                float dst = Mathf.dst2(x, y, tile.worldx(), tile.worldy());
-                if(useCounts){
-                    int count = minerCount(tile);
-                    if(count < bestCount || (count == bestCount && dst < bestDst)){
-                        bestCount = count;
-                        bestDst = dst;
-                        best = tile;
-                    }
-                }else{
-                    if(dst < bestDst){
-                        bestDst = dst;
-                        best = tile;
-                    }
-                }
-            }
-        }
-
-        return best;
+        return harvestIndex.findCrystal(x, y, searchRange(radius), useCounts, Integer.MAX_VALUE);
     }
 
     Tile findNearestFreeOre(float x, float y, float radius){
-        Tile best = null;
-        float bestDst = Float.MAX_VALUE;
-
-        int range = (int)(radius / tilesize);
-        range = Math.min(range, 100);
-
-        int tx = world.toTile(x);
-        int ty = world.toTile(y);
-
-        for(int dx = -range; dx <= range; dx++){
-            for(int dy = -range; dy <= range; dy++){
-                Tile tile = world.tile(tx + dx, ty + dy);
-                if(tile == null || !(tile.block() instanceof CrystalMineralWall)) continue;
-
-                if(targetCount(targetNovas, tile) > 0 || targetCount(targetPulsars, tile) > 0) continue;
-
-                float dst = Mathf.dst2(x, y, tile.worldx(), tile.worldy());
-                if(dst < bestDst){
-                    bestDst = dst;
-                    best = tile;
-                }
-            }
-        }
+        return harvestIndex.findCrystal(x, y, searchRange(radius), false, 0);
+    }
 
-        return best;
+    /** @return the search radius in tiles. Clamped to prevent searching the entire map. */
+    static int searchRange(float radius){
+        return Math.min((int)(radius / tilesize), 100);
     }
 
     static boolean isNova(Unit unit){
@@ -782,6 +672,7 @@ public class HarvestAI extends AIController{
         if(!seq.contains(unit)){
             seq.add(unit);
         }
+        syncSaturation(map, tile);
     }
 
     static void removeActive(ObjectMap<Tile, Seq<Unit>> map, Tile tile, Unit unit){
@@ -791,6 +682,14 @@ public class HarvestAI extends AIController{
         if(seq.isEmpty()){
             map.remove(tile);
         }
+        syncSaturation(map, tile);
+    }
+
+    /** Updates the harvest index after the targeters of a crystal changed. */
+    static void syncSaturation(ObjectMap<Tile, Seq<Unit>> map, Tile tile){
+        if(map == targetNovas || map == targetPulsars){
+            harvestIndex.setSaturation(tile, minerCount(tile));
+        }
     }
 
     static void cleanupMap(ObjectMap<Tile, Seq<Unit>> map){
@@ -821,8 +720,13 @@ public class HarvestAI extends AIController{
 
     static void cleanupTargets(ObjectMap<Tile, Seq<Unit>> map){
         Seq<Tile> toRemove = new Seq<>();
+        Seq<Tile> changed = new Seq<>();
         map.each((tile, units) -> {
+            int size = units.size;
             units.removeAll(u -> u == null || !u.isValid() || u.dead || !isHarvestingUnit(u) || !isTargetingTile(u, tile));
+            if(units.size != size){
+                changed.add(tile);
+            }
             if(units.isEmpty()){
                 toRemove.add(tile);
             }
@@ -830,6 +734,9 @@ public class HarvestAI extends AIController{
         for(Tile tile : toRemove){
             map.remove(tile);
         }
+        for(Tile tile : changed){
+            syncSaturation(map, tile);
+        }
     }
 
     static boolean isTargetingTile(Unit unit, Tile tile){
@@ -3,6 +3,7 @@ package mindustry.async;
 import arc.*;
 import arc.struct.*;
 import arc.util.*;
+import mindustry.core.*;
 import mindustry.game.EventType.*;
 
 import java.util.concurrent.*;
@@ -16,10 +17,22 @@ public class AsyncCore{
         avoidance = new AvoidanceProcess()
     );
 
-    //futures to be awaited
-    private final Seq<Future<?>> futures = new Seq<>();
+    /**
+     * Work-stealing pool shared by all processes and their subtasks. The main thread waits for these every frame.
+     * Processes that wait for subtasks from a worker thread help run them, so splitting work never leaves threads idle.
+     */
+    private static final ForkJoinPool workers = createPool("AsyncLogic-Worker-", OS.cores);
+    /**
+     * Pool for long-running jobs that the main thread does not wait for, such as fog and pathfinding.
+     * Kept apart from {@link #workers} and limited to half the cores, so these jobs can never hold up the per-frame processes.
+     */
+    private static final ForkJoinPool background = createPool("AsyncLogic-Background-", Math.max(1, OS.cores / 2));
 
-    private ExecutorService executor;
+    //futures to be awaited
+    private final Seq<CompletableFuture<?>> futures = new Seq<>();
+    /** Futures of the processes scheduled this frame, by process. */
+    private final ObjectMap<AsyncProcess, CompletableFuture<?>> scheduled = new ObjectMap<>();
+    private final Seq<AsyncProcess> pending = new Seq<>(), dependencies = new Seq<>();
 
     public AsyncCore(){
         Events.on(WorldLoadEvent.class, e -> {
@@ -45,21 +58,44 @@ public class AsyncCore{
             }
 
             futures.clear();
+            scheduled.clear();
+            pending.clear();
 
-            //init executor with size of potentially-modified process list
-            if(executor == null){
-                executor = Executors.newFixedThreadPool(processes.size, r -> {
-                    Thread thread = new Thread(r, "AsyncLogic-Thread");
-                    thread.setDaemon(true);
-                    thread.setUncaughtExceptionHandler((t, e) -> Threads.throwAppException(e));
-                    return thread;
-                });
-            }
-
-            //submit all tasks
             for(AsyncProcess p : processes){
                 if(p.shouldProcess()){
-                    futures.add(executor.submit(p::process));
+                    pending.add(p);
+                }
+            }
+
+            //schedule processes in dependency order; each one starts as soon as the processes it depends on are done
+            while(pending.any()){
+                boolean progress = false;
+
+                for(int i = 0; i < pending.size; i++){
+                    AsyncProcess p = pending.get(i);
+                    if(!ready(p)) continue;
+
+                    CompletableFuture<?> future;
+                    if(dependencies.isEmpty()){
+                        future = CompletableFuture.runAsync(() -> run(p), workers);
+                    }else{
+                        CompletableFuture<?>[] required = new CompletableFuture<?>[dependencies.size];
+                        for(int j = 0; j < required.length; j++){
+                            required[j] = scheduled.get(dependencies.get(j));
+                        }
+                        future = CompletableFuture.allOf(required).thenRunAsync(() -> run(p), workers);
+                    }
+
+                    scheduled.put(p, future);
+                    futures.add(future);
+                    pending.remove(i--);
+                    progress = true;
+                }
+
+                if(!progress){
+                    //let the already scheduled processes finish before failing
+                    complete();
+                    throw new IllegalStateException("Async processes have circular dependencies: " + pending);
                 }
             }
         }
@@ -76,11 +112,102 @@ public class AsyncCore{
         }
     }
 
+    /**
+     * Runs tasks in parallel on the shared worker pool and waits for all of them. The calling thread runs the first task itself.
+     * Processes use this to split {@link AsyncProcess#process()} into subtasks.
+     */
+    public static void runAll(Seq<? extends Runnable> tasks){
+        runAll(workers, tasks);
+    }
+
+    /** Like {@link #runAll(Seq)}, but for background jobs; see {@link #execute(Runnable)}. */
+    public static void runAllBackground(Seq<? extends Runnable> tasks){
+        runAll(background, tasks);
+    }
+
+    private static void runAll(ForkJoinPool pool, Seq<? extends Runnable> tasks){
+        if(tasks.isEmpty()) return;
+        if(tasks.size == 1){
+            tasks.first().run();
+            return;
+        }
+
+        ForkJoinTask<?>[] running = new ForkJoinTask<?>[tasks.size - 1];
+        for(int i = 1; i < tasks.size; i++){
+            running[i - 1] = pool.submit(tasks.get(i));
+        }
+
+        RuntimeException error = null;
+        try{
+            tasks.first().run();
+        }catch(RuntimeException e){
+            error = e;
+        }
+
+        //join everything before rethrowing, so no task outlives the call
+        for(var task : running){
+            try{
+                task.join();
+            }catch(RuntimeException e){
+                error = e;
+            }
+        }
+
+        if(error != null) throw error;
+    }
+
+    /** Runs a background job without waiting for it. The task must handle its own errors. */
+    public static void execute(Runnable task){
+        background.execute(task);
+    }
+
+    /** @return whether all processes this one depends on are already scheduled. Fills {@link #dependencies} with the ones that are processing this frame. */
+    private boolean ready(AsyncProcess process){
+        dependencies.clear();
+        for(AsyncProcess other : processes){
+            if(other == process || !process.dependsOn(other)) continue;
+
+            if(scheduled.containsKey(other)){
+                dependencies.add(other);
+            }else if(pending.contains(other, true)){
+                return false;
+            }
+            //processes that are not running this frame are ignored
+        }
+        return true;
+    }
+
+    private static void run(AsyncProcess process){
+        PerfCounter counter = process.counter();
+        long start = Time.nanos();
+
+        process.process();
+
+        long elapsed = Time.timeSinceNanos(start);
+        if(counter != null){
+            counter.record(elapsed);
+        }
+        if(profiler.enabled){
+            profiler.async.child(process.getClass().getSimpleName()).add(elapsed);
+        }
+    }
+
+    private static ForkJoinPool createPool(String name, int parallelism){
+        return new ForkJoinPool(parallelism, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, (thread, error) -> Threads.throwAppException(error), false);
+    }
+
     private void complete(){
         //wait for all threads to stop processing
         for(var future : futures){
             try{
-                future.get();
+                future.join();
+            }catch(CompletionException e){
+                throw new RuntimeException(e.getCause());
             }catch(Throwable t){
                 throw new RuntimeException(t);
             }
@@ -1,5 +1,8 @@
 package mindustry.async;
 
+import arc.util.*;
+import mindustry.core.*;
+
 public interface AsyncProcess{
 
     /** Sync. Called when the world loads. */
@@ -11,7 +14,7 @@ public interface AsyncProcess{
     /** Sync. Called at the beginning of the main loop. */
     default void begin(){}
 
-    /** Async. Called in a separate thread. */
+    /** Async. Called in a separate thread. Heavy work can be split into subtasks with {@link AsyncCore#runAll(arc.struct.Seq)}. */
     default void process(){}
 
     /** Sync. Called in the end of the main loop. */
@@ -20,4 +23,14 @@ public interface AsyncProcess{
     default boolean shouldProcess(){
         return true;
     }
+
+    /** @return whether this process must only start processing after the other one is done. Ignored if the other process is not processing this frame. */
+    default boolean dependsOn(AsyncProcess other){
+        return false;
+    }
+
+    /** @return the counter that the time spent in {@link #process()} is recorded to. */
+    default @Nullable PerfCounter counter(){
+        return null;
+    }
 }
@@ -5,6 +5,7 @@ import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
+import mindustry.core.*;
 
 import java.util.*;
 
@@ -13,14 +14,21 @@ import static mindustry.Vars.*;
 public class AvoidanceProcess implements AsyncProcess{
     /** cached world size */
     static int wwidth, wheight;
+    /** Minimum amount of stamps for each stripe processed in parallel. */
+    static final int stampsPerStripe = 64;
 
     @Nullable int[] buffer1, buffer2;
     volatile boolean swap;
 
     IntSeq requests = new IntSeq();
 
+    /** Bounds of the cells stamped the last time each buffer was processed, as x1, y1, x2, y2. Only these are cleared. */
+    IntSeq dirty1 = new IntSeq(), dirty2 = new IntSeq();
+    /** Bounds of the stamps of the current requests. */
+    IntSeq stamps = new IntSeq();
+    Seq<StripeTask> tasks = new Seq<>(), stripeTasks = new Seq<>();
+
     @Nullable int[] avoidance;
-    boolean modified;
     boolean active;
 
     public @Nullable int[] getAvoidance(){
@@ -43,9 +51,10 @@ public class AvoidanceProcess implements AsyncProcess{
     public void reset(){
         buffer1 = buffer2 = avoidance = null;
         swap = false;
-        modified = false;
         active = false;
         requests.clear();
+        dirty1.clear();
+        dirty2.clear();
     }
 
     @Override
@@ -74,37 +83,103 @@ public class AvoidanceProcess implements AsyncProcess{
     public void process(){
         //double buffering; one buffer is always valid (not being updated)
         var buffer = swap ? buffer1 : buffer2;
+        var dirty = swap ? dirty1 : dirty2;
         swap = !swap;
 
         if(buffer == null) return;
-        //technically, this is wrong, and will lead to flickering avoidance when all units are gone, but this doesn't matter because it's not being queried either way
-        if(modified){
-            Arrays.fill(buffer, 0);
-        }
-
-        modified = requests.size > 0;
 
-        int total = requests.size;
+        //bounds of every stamp, clamped to the world
+        stamps.clear();
+        int total = 0;
         int[] items = requests.items;
-        for(int i = 0; i < total; i += 3){
-            int point = items[i], id = items[i + 2];
+        for(int i = 0; i < requests.size; i += 3){
+            int point = items[i];
             int rx = Point2.x(point), ry = Point2.y(point);
-            float rad = Float.intBitsToFloat(items[i + 1]);
-            float rad2 = rad * rad;
+            int r = Math.max(1, Mathf.ceil(Float.intBitsToFloat(items[i + 1])));
+            int x1 = Math.max(rx - r, 0), y1 = Math.max(ry - r, 0), x2 = Math.min(rx + r, wwidth - 1), y2 = Math.min(ry + r, wheight - 1);
 
-            int r = Math.max(1, Mathf.ceil(rad));
+            //units far outside the world (e.g. unbounded ones) do not cover any cells; drop their requests, so requests and stamps stay aligned
+            if(x1 > x2 || y1 > y2) continue;
+
+            stamps.add(x1, y1, x2, y2);
+            items[total++] = point;
+            items[total++] = items[i + 1];
+            items[total++] = items[i + 2];
+        }
+        requests.size = total;
+
+        //split the map into horizontal stripes, so threads never write to the same cells; small workloads are not worth the overhead
+        int stripes = Mathf.clamp(total / 3 / stampsPerStripe, 1, Math.min(OS.cores, Math.max(wheight, 1)));
+        int rows = Mathf.ceil(wheight / (float)stripes);
+
+        while(tasks.size < stripes) tasks.add(new StripeTask());
+        stripeTasks.clear();
+        for(int i = 0; i < stripes; i++){
+            StripeTask task = tasks.get(i);
+            task.set(buffer, dirty, i * rows, Math.min((i + 1) * rows, wheight));
+            stripeTasks.add(task);
+        }
+
+        AsyncCore.runAll(stripeTasks);
+
+        //the stamped areas are what needs to be cleared the next time this buffer is used
+        dirty.clear();
+        dirty.addAll(stamps);
+    }
 
-            for(int dx = -r; dx <= r; dx++){
-                for(int dy = -r; dy <= r; dy++){
-                    int x = dx + rx, y = dy + ry;
-                    if(x >= 0 && y >= 0 && x < wwidth && y < wheight && (dx*dx + dy*dy) <= rad2){
-                        buffer[x + y * wwidth] = Math.max(buffer[x + y * wwidth], Integer.MAX_VALUE - id);
+    /** Clears the previously stamped cells of a range of rows, then stamps every request that overlaps it. */
+    class StripeTask implements Runnable{
+        int[] buffer;
+        IntSeq dirty;
+        int minY, maxY;
+
+        void set(int[] buffer, IntSeq dirty, int minY, int maxY){
+            this.buffer = buffer;
+            this.dirty = dirty;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        @Override
+        public void run(){
+            int[] buffer = this.buffer, bounds = dirty.items;
+            for(int i = 0; i < dirty.size; i += 4){
+                int x1 = bounds[i], x2 = bounds[i + 2];
+                for(int y = Math.max(bounds[i + 1], minY), y2 = Math.min(bounds[i + 3], maxY - 1); y <= y2; y++){
+                    Arrays.fill(buffer, x1 + y * wwidth, x2 + y * wwidth + 1, 0);
+                }
+            }
+
+            int[] items = requests.items, stamped = stamps.items;
+            for(int i = 0, s = 0; i < requests.size; i += 3, s += 4){
+                int y1 = Math.max(stamped[s + 1], minY), y2 = Math.min(stamped[s + 3], maxY - 1);
+                if(y1 > y2) continue;
+
+                int point = items[i], id = items[i + 2];
+                int rx = Point2.x(point), ry = Point2.y(point);
+                float rad = Float.intBitsToFloat(items[i + 1]);
+                float rad2 = rad * rad;
+                int value = Integer.MAX_VALUE - id;
+
+                for(int y = y1; y <= y2; y++){
+                    int dy = y - ry;
+                    for(int x = stamped[s], x2 = stamped[s + 2]; x <= x2; x++){
+                        int dx = x - rx;
+                        if(dx*dx + dy*dy <= rad2){
+                            int index = x + y * wwidth;
+                            buffer[index] = Math.max(buffer[index], value);
+                        }
                     }
                 }
             }
         }
     }
 
+    @Override
+    public PerfCounter counter(){
+        return PerfCounter.avoidance;
+    }
+
     @Override
     public boolean shouldProcess(){
         return active;
@@ -4,11 +4,15 @@ import arc.math.*;
 import arc.math.geom.*;
 import arc.math.geom.QuadTree.*;
 import arc.struct.*;
+import arc.util.*;
 import mindustry.*;
 import mindustry.async.PhysicsProcess.PhysicsWorld.*;
+import mindustry.core.*;
 import mindustry.entities.*;
 import mindustry.gen.*;
 
+import java.util.*;
+
 public class PhysicsProcess implements AsyncProcess{
     public static final int
     layers = 4,
@@ -87,6 +91,11 @@ public class PhysicsProcess implements AsyncProcess{
         physics.update();
     }
 
+    @Override
+    public PerfCounter counter(){
+        return PerfCounter.physics;
+    }
+
     @Override
     public void end(){
         if(physics == null) return;
@@ -126,21 +135,36 @@ public class PhysicsProcess implements AsyncProcess{
         }
     }
 
-    //world for simulating physics in a different thread
+    /**
+     * World for simulating physics in a different thread.
+     * Bodies are bucketed into a hashed uniform grid per layer, with cells as large as the largest possible overlap in that layer.
+     * Collisions are then resolved one cell at a time in nine phases: cells of the same phase are at least three cells apart,
+     * so they never touch the same bodies and can be resolved in parallel. The result does not depend on the amount of threads.
+     */
     public static class PhysicsWorld{
         //how much to soften movement by
         private static final float scl = 1.25f;
+        /** Minimum amount of local bodies before collisions are resolved on multiple threads. */
+        private static final int parallelThreshold = 512;
+        /** Minimum amount of cells resolved by each task. */
+        private static final int cellsPerTask = 32;
 
-        private final QuadTree<PhysicsBody>[] trees = new QuadTree[layers];
         private final Seq<PhysicsBody> bodies = new Seq<>(false, 16, PhysicsBody.class);
-        private final Seq<PhysicsBody> seq = new Seq<>(PhysicsBody.class);
-        private final Rect rect = new Rect();
-        private final Vec2 vec = new Vec2();
-        private final Rand rand = new Rand();
+        private final float originX, originY;
+        private final LayerGrid[] grids = new LayerGrid[layers];
+        /** Cells of every layer by phase, as pairs of layer and cell index. */
+        private final IntSeq[] phases = new IntSeq[9];
+        private final Seq<ResolveTask> tasks = new Seq<>(), runTasks = new Seq<>();
 
         public PhysicsWorld(Rect bounds){
+            originX = bounds.x;
+            originY = bounds.y;
+
             for(int i = 0; i < layers; i++){
-                trees[i] = new QuadTree<>(new Rect(bounds));
+                grids[i] = new LayerGrid();
+            }
+            for(int i = 0; i < phases.length; i++){
+                phases[i] = new IntSeq();
             }
         }
 
@@ -153,65 +177,245 @@ public class PhysicsProcess implements AsyncProcess{
         }
 
         public void update(){
-            for(int i = 0; i < layers; i++){
-                trees[i].clear();
-            }
-
             var bodyItems = bodies.items;
-            int bodySize = bodies.size;
+            int bodySize = bodies.size, localCount = 0;
+
+            for(var grid : grids){
+                grid.maxRadius = 0f;
+                grid.count = 0;
+            }
 
             for(int i = 0; i < bodySize; i++){
                 PhysicsBody body = bodyItems[i];
                 if(body.layer < 0) continue;
                 body.collided = false;
-                trees[body.layer].insert(body);
+
+                LayerGrid grid = grids[body.layer];
+                grid.maxRadius = Math.max(grid.maxRadius, body.radius);
+                grid.count++;
+                if(body.local) localCount++;
             }
 
-            for(int i = 0; i < bodySize; i++){
-                PhysicsBody body = bodyItems[i];
-                //for clients, the only body that collides is the local one; all other physics simulations are handled by the server.
-                if(!body.local || body.layer < 0) continue;
+            for(var phase : phases){
+                phase.clear();
+            }
 
-                body.hitbox(rect);
+            for(int layer = 0; layer < layers; layer++){
+                LayerGrid grid = grids[layer];
+                if(grid.count > 0){
+                    grid.build(layer, bodyItems, bodySize, originX, originY);
 
-                seq.size = 0;
-                trees[body.layer].intersect(rect, seq);
-                int size = seq.size;
-                var items = seq.items;
+                    for(int c = 0; c < grid.cells; c++){
+                        phases[Math.floorMod(grid.cellX[c], 3) + Math.floorMod(grid.cellY[c], 3) * 3].add(layer, c);
+                    }
+                }
+            }
 
-                for(int j = 0; j < size; j++){
-                    PhysicsBody other = items[j];
+            boolean parallel = localCount >= parallelThreshold && OS.cores > 1;
 
-                    if(other == body || other.collided) continue;
+            for(var phase : phases){
+                int cells = phase.size / 2;
+                if(cells == 0) continue;
 
-                    float rs = body.radius + other.radius;
-                    float dst = Mathf.dst(body.x, body.y, other.x, other.y);
+                int taskCount = parallel ? Mathf.clamp(cells / cellsPerTask, 1, OS.cores) : 1;
+                int perTask = Mathf.ceil(cells / (float)taskCount);
 
-                    if(dst < rs){
-                        vec.set(body.x - other.x, body.y - other.y);
+                while(tasks.size < taskCount) tasks.add(new ResolveTask());
+                runTasks.clear();
+                for(int i = 0; i < taskCount; i++){
+                    ResolveTask task = tasks.get(i);
+                    task.phase = phase;
+                    task.from = i * perTask;
+                    task.to = Math.min((i + 1) * perTask, cells);
+                    runTasks.add(task);
+                }
 
-                        if(vec.isZero()){ //exact stacked bodies will move in random directions away from each other
-                            vec.trns(rand.random(360f), rs - dst);
-                        }else{
-                            vec.setLength(rs - dst);
-                        }
+                AsyncCore.runAll(runTasks);
+            }
+        }
+
+        /** Resolves a range of the cells of a phase. */
+        class ResolveTask implements Runnable{
+            final Vec2 vec = new Vec2();
+            final Rand rand = new Rand();
+            IntSeq phase;
+            int from, to;
+
+            @Override
+            public void run(){
+                int[] items = phase.items;
+                for(int i = from; i < to; i++){
+                    resolve(grids[items[i * 2]], items[i * 2 + 1]);
+                }
+            }
 
-                        float ms = body.mass + other.mass;
-                        float m1 = other.mass / ms, m2 = body.mass / ms;
+            void resolve(LayerGrid grid, int cell){
+                int cx = grid.cellX[cell], cy = grid.cellY[cell];
+                PhysicsBody[] sorted = grid.sorted;
 
-                        //first body is always local due to guard check above
-                        float scl1 = scl * Math.max(1f, body.pushScale);
-                        float scl2 = scl * Math.max(1f, other.pushScale);
-                        body.x += vec.x * m1 / scl1;
-                        body.y += vec.y * m1 / scl1;
+                for(int i = grid.cellStart[cell], end = grid.cellStart[cell + 1]; i < end; i++){
+                    PhysicsBody body = sorted[i];
+                    //for clients, the only body that collides is the local one; all other physics simulations are handled by the server.
+                    if(!body.local) continue;
 
-                        if(other.local){
-                            other.x -= vec.x * m2 / scl2;
-                            other.y -= vec.y * m2 / scl2;
+                    for(int dy = -1; dy <= 1; dy++){
+                        for(int dx = -1; dx <= 1; dx++){
+                            int other = grid.find(cx + dx, cy + dy);
+                            if(other == -1) continue;
+
+                            for(int j = grid.cellStart[other], otherEnd = grid.cellStart[other + 1]; j < otherEnd; j++){
+                                collide(body, sorted[j]);
+                            }
                         }
                     }
+
+                    body.collided = true;
+                }
+            }
+
+            void collide(PhysicsBody body, PhysicsBody other){
+                if(other == body || other.collided) return;
+
+                float rs = body.radius + other.radius;
+                float dst = Mathf.dst(body.x, body.y, other.x, other.y);
+
+                if(dst < rs){
+                    vec.set(body.x - other.x, body.y - other.y);
+
+                    if(vec.isZero()){ //exact stacked bodies will move in random directions away from each other
+                        //seeded by the pair, so the direction does not depend on which thread resolves it
+                        rand.setSeed(((long)body.index << 32) | other.index);
+                        vec.trns(rand.random(360f), rs - dst);
+                    }else{
+                        vec.setLength(rs - dst);
+                    }
+
+                    float ms = body.mass + other.mass;
+                    float m1 = other.mass / ms, m2 = body.mass / ms;
+
+                    //first body is always local due to guard check above
+                    float scl1 = scl * Math.max(1f, body.pushScale);
+                    float scl2 = scl * Math.max(1f, other.pushScale);
+                    body.x += vec.x * m1 / scl1;
+                    body.y += vec.y * m1 / scl1;
+
+                    if(other.local){
+                        other.x -= vec.x * m2 / scl2;
+                        other.y -= vec.y * m2 / scl2;
+                    }
                 }
-                body.collided = true;
+            }
+        }
+
+        /** Bodies of a single layer, sorted by the grid cell they are in. Cells are stored in an open-addressing hash table, so only occupied cells take up memory. */
+        static class LayerGrid{
+            float maxRadius, cellSize;
+            /** Amount of bodies in this layer, and amount of occupied cells. */
+            int count, cells;
+
+            int[] cellX = {}, cellY = {}, cellStart = {};
+            /** Cell index of every body in {@link #sorted} order before sorting. */
+            int[] bodyCell = {};
+            PhysicsBody[] sorted = {}, unsorted = {};
+
+            /** Hash table of cell coordinates to cell index. */
+            long[] keys = {};
+            int[] values = {};
+            int mask;
+
+            void build(int layer, PhysicsBody[] bodies, int size, float originX, float originY){
+                //two bodies can only overlap if they are closer than their combined radii
+                cellSize = Math.max(maxRadius * 2f, 1f);
+                cells = 0;
+
+                int capacity = Math.max(Integer.highestOneBit(count * 2 - 1) << 1, 16);
+                if(keys.length != capacity){
+                    keys = new long[capacity];
+                    values = new int[capacity];
+                }
+                Arrays.fill(values, -1);
+                mask = capacity - 1;
+
+                if(unsorted.length < count){
+                    unsorted = new PhysicsBody[count];
+                    sorted = new PhysicsBody[count];
+                    bodyCell = new int[count];
+                    cellX = new int[count];
+                    cellY = new int[count];
+                    cellStart = new int[count + 1];
+                }
+
+                //assign cells in body order, so the result is deterministic
+                int n = 0;
+                for(int i = 0; i < size; i++){
+                    PhysicsBody body = bodies[i];
+                    if(body.layer != layer) continue;
+
+                    body.index = i;
+                    int cx = (int)Math.floor((body.x - originX) / cellSize), cy = (int)Math.floor((body.y - originY) / cellSize);
+                    int cell = find(cx, cy);
+                    if(cell == -1){
+                        cell = cells++;
+                        insert(cx, cy, cell);
+                        cellX[cell] = cx;
+                        cellY[cell] = cy;
+                        cellStart[cell] = 0;
+                    }
+
+                    cellStart[cell]++;
+                    unsorted[n] = body;
+                    bodyCell[n++] = cell;
+                }
+
+                //counting sort by cell; cellStart[c] is the first index of cell c, and cellStart[cells] is the end
+                int total = 0;
+                for(int c = 0; c < cells; c++){
+                    int amount = cellStart[c];
+                    cellStart[c] = total;
+                    total += amount;
+                }
+                cellStart[cells] = total;
+
+                for(int i = 0; i < n; i++){
+                    sorted[cellStart[bodyCell[i]]++] = unsorted[i];
+                }
+
+                //every start was advanced to the next cell's start
+                for(int c = cells; c > 0; c--){
+                    cellStart[c] = cellStart[c - 1];
+                }
+                cellStart[0] = 0;
+
+                Arrays.fill(unsorted, 0, n, null);
+            }
+
+            /** @return the index of a cell, or -1 if it is empty. */
+            int find(int cx, int cy){
+                long key = key(cx, cy);
+                for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask){
+                    int value = values[slot];
+                    if(value == -1) return -1;
+                    if(keys[slot] == key) return value;
+                }
+            }
+
+            void insert(int cx, int cy, int cell){
+                long key = key(cx, cy);
+                int slot = hash(key) & mask;
+                while(values[slot] != -1){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = cell;
+            }
+
+            static long key(int cx, int cy){
+                return ((long)cx << 32) | (cy & 0xffffffffL);
+            }
+
+            static int hash(long key){
+                long h = key * 0x9E3779B97F4A7C15L;
+                return (int)(h ^ (h >>> 32));
             }
         }
 
@@ -219,6 +423,8 @@ public class PhysicsProcess implements AsyncProcess{
             public float x, y, radius, mass, pushScale = 1f;
             public int layer = 0;
             public boolean collided = false, local = true;
+            /** Index in the body list during the last update. */
+            int index;
 
             @Override
             public void hitbox(Rect out){
@@ -3558,6 +3558,7 @@ public class Blocks{
         //region turrets
 
         duo = new ItemTurret("duo"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 35));
             ammo(
                 Items.copper,  new BasicBulletType(2.5f, 9){{
@@ -3633,6 +3634,7 @@ public class Blocks{
         }};
 
         scatter = new ItemTurret("scatter"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 85, Items.lead, 45));
             ammo(
                 Items.scrap, new FlakBulletType(4f, 3){{
@@ -3719,6 +3721,7 @@ public class Blocks{
         }};
 
         scorch = new ItemTurret("scorch"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 25, Items.graphite, 22));
             ammo(
                 Items.coal, new BulletType(3.35f, 17f){{
@@ -3764,6 +3767,7 @@ public class Blocks{
         }};
 
         hail = new ItemTurret("hail"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.graphite, 100, Items.highEnergyGas, 50));
             buildTime = 18f * 60f;
             ammo(
@@ -3832,6 +3836,7 @@ public class Blocks{
         }};
 
         wave = new LiquidTurret("wave"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.metaglass, 45, Items.lead, 75, Items.copper, 25));
             ammo(
                 Liquids.water,new LiquidBulletType(Liquids.water){{
@@ -3864,6 +3869,7 @@ public class Blocks{
         }};
 
         lancer = new PowerTurret("lancer"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 60, Items.lead, 70, Items.silicon, 60, Items.titanium, 30));
             range = 165f;
 
@@ -3905,6 +3911,7 @@ public class Blocks{
         }};
 
         arc = new PowerTurret("arc"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 50, Items.lead, 50));
             shootType = new LightningBulletType(){{
                 damage = 20;
@@ -4062,6 +4069,7 @@ public class Blocks{
         }};
 
         salvo = new ItemTurret("salvo"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 100, Items.graphite, 80, Items.titanium, 50));
             ammo(
                 Items.copper,  new BasicBulletType(2.5f, 11){{
@@ -4178,6 +4186,7 @@ public class Blocks{
         }};
 
         tsunami = new LiquidTurret("tsunami"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.metaglass, 100, Items.lead, 400, Items.titanium, 250, Items.thorium, 100));
             ammo(
                 Liquids.water, new LiquidBulletType(Liquids.water){{
@@ -4242,6 +4251,7 @@ public class Blocks{
         }};
 
         fuse = new ItemTurret("fuse"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 225, Items.graphite, 225, Items.thorium, 100));
 
             reload = 35f;
@@ -4282,6 +4292,7 @@ public class Blocks{
         }};
 
         ripple = new ItemTurret("ripple"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 150, Items.graphite, 135, Items.titanium, 60));
             ammo(
                 Items.graphite, new ArtilleryBulletType(3f, 40){{
@@ -4412,6 +4423,7 @@ public class Blocks{
         }};
 
         cyclone = new ItemTurret("cyclone"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 200, Items.titanium, 125, Items.plastanium, 80));
             ammo(
                 Items.metaglass, new FlakBulletType(4f, 6){{
@@ -4530,6 +4542,7 @@ public class Blocks{
         }};
 
         foreshadow = new ItemTurret("foreshadow"){{
+            dozeWhenIdle = true;
             float brange = range = 500f;
 
             requirements(Category.turret, with(Items.copper, 1000, Items.metaglass, 600, Items.surgeAlloy, 300, Items.plastanium, 200, Items.silicon, 600));
@@ -4575,6 +4588,7 @@ public class Blocks{
         }};
 
         spectre = new ItemTurret("spectre"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.copper, 900, Items.graphite, 300, Items.surgeAlloy, 250, Items.plastanium, 175, Items.thorium, 250));
             ammo(
                 Items.graphite, new BasicBulletType(7.5f, 50){{
@@ -4678,6 +4692,7 @@ public class Blocks{
         }};
 
         breach = new ItemTurret("breach"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.beryllium, 150, Items.silicon, 150, Items.graphite, 125));
 
             Effect sfe = new MultiEffect(Fx.shootBigColor, Fx.colorSparkBig);
@@ -4790,6 +4805,7 @@ public class Blocks{
         }};
 
         diffuse = new ItemTurret("diffuse"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.beryllium, 150, Items.silicon, 200, Items.graphite, 200, Items.tungsten, 50));
 
             ammo(
@@ -4966,6 +4982,7 @@ public class Blocks{
         }};
 
         titan = new ItemTurret("titan"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.tungsten, 250, Items.silicon, 300, Items.thorium, 400));
 
             ammo(
@@ -5148,6 +5165,7 @@ public class Blocks{
         }};
 
         disperse = new ItemTurret("disperse"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.thorium, 50, Items.oxide, 150, Items.silicon, 200, Items.beryllium, 350));
 
             ammo(
@@ -5332,6 +5350,7 @@ public class Blocks{
         }};
 
         afflict = new PowerTurret("afflict"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.surgeAlloy, 100, Items.silicon, 200, Items.graphite, 250, Items.oxide, 40));
             buildCostMultiplier = 1f;
 
@@ -5520,6 +5539,7 @@ public class Blocks{
         }};
 
         scathe = new ItemTurret("scathe"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.silicon, 450, Items.graphite, 400, Items.tungsten, 500, Items.oxide, 100, Items.carbide, 200));
 
             predictTarget = false;
@@ -5923,6 +5943,7 @@ public class Blocks{
         }};
 
         smite = new ItemTurret("smite"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.oxide, 200, Items.surgeAlloy, 400, Items.silicon, 800, Items.carbide, 500, Items.phaseFabric, 300));
 
             ammo(
@@ -6193,6 +6214,7 @@ public class Blocks{
         }};
 
         malign = new PowerTurret("malign"){{
+            dozeWhenIdle = true;
             requirements(Category.turret, with(Items.carbide, 200, Items.beryllium, 1000, Items.silicon, 500, Items.graphite, 500, Items.phaseFabric, 200));
 
             var haloProgress = PartProgress.warmup;
@@ -405,6 +405,8 @@ public class Logic implements ApplicationListener{
     public void update(){
         PerfCounter.frame.end();
         PerfCounter.frame.begin();
+        profiler.endTick();
+        long logicStart = profiler.begin();
 
         Events.fire(Trigger.update);
         universe.updateGlobal();
@@ -427,11 +429,15 @@ public class Logic implements ApplicationListener{
                 float delta = Core.graphics.getDeltaTime();
                 state.tick += Float.isNaN(delta) || Float.isInfinite(delta) ? 0f : delta * 60f;
                 state.updateId ++;
+                long start = profiler.begin();
                 state.teams.updateTeamStats();
+                profiler.end(profiler.teams, start);
                 MapPreviewLoader.checkPreviews();
 
                 if(state.rules.fog){
+                    start = profiler.begin();
                     fogControl.update();
+                    profiler.end(profiler.fog, start);
                 }
 
                 if(state.isCampaign()){
@@ -447,8 +453,11 @@ public class Logic implements ApplicationListener{
 
                 //weather is serverside
                 if(!net.client() && !state.isEditor()){
+                    start = profiler.begin();
                     updateWeather();
+                    profiler.end(profiler.weather, start);
 
+                    start = profiler.begin();
                     for(TeamData data : state.teams.getActive()){
                         var rules = data.team.rules();
                         if(rules.fillItems && data.cores.size > 0){
@@ -484,10 +493,13 @@ public class Logic implements ApplicationListener{
                             }
                         }
                     }
+                    profiler.end(profiler.teamAi, start);
                 }
 
                 if(!state.isEditor()){
+                    start = profiler.begin();
                     state.rules.objectives.update();
+                    profiler.end(profiler.objectives, start);
                 }
 
                 if(state.rules.waves && state.rules.waveTimer && !state.gameOver){
@@ -497,7 +509,9 @@ public class Logic implements ApplicationListener{
                 }
 
                 if(!net.client() && state.wavetime <= 0 && state.rules.waves){
+                    start = profiler.begin();
                     runWave();
+                    profiler.end(profiler.waves, start);
                 }
 
                 //apply weather attributes
@@ -506,7 +520,9 @@ public class Logic implements ApplicationListener{
                 Groups.weather.each(w -> state.envAttrs.add(w.weather.attrs, w.opacity));
 
                 PerfCounter.entityUpdate.begin();
+                start = profiler.begin();
                 Groups.update();
+                profiler.end(profiler.entities, start);
                 PerfCounter.entityUpdate.end();
 
                 Events.fire(Trigger.afterGameUpdate);
@@ -518,6 +534,8 @@ public class Logic implements ApplicationListener{
         }else if(netServer.isWaitingForPlayers() && runStateCheck){
             checkGameState();
         }
+
+        profiler.end(profiler.logic, logicStart);
     }
 
     /** @return whether the wave timer is paused due to enemies */
@@ -70,6 +70,14 @@ public class NetClient implements ApplicationListener{
     private ReusableByteInStream byteStream = new ReusableByteInStream();
     private DataInputStream dataStream = new DataInputStream(byteStream);
     private Reads dataStreamReads = new Reads(dataStream);
+    /** Entity payloads of recently received snapshots, used to decode delta records. */
+    private SnapshotHistory receivedSnapshots = new SnapshotHistory();
+    /** Last entity snapshot ID that was acknowledged to the server. */
+    private int lastAckedSnapshot = -1;
+    /** Decoded payload of a single entity. */
+    private byte[] payloadBuffer = new byte[256];
+    private ReusableByteInStream payloadStream = new ReusableByteInStream();
+    private Reads payloadReads = new Reads(new DataInputStream(payloadStream));
     /** Packet handlers for custom types of messages. */
     private ObjectMap<String, Seq<Cons<String>>> customPacketHandlers = new ObjectMap<>();
     /** Packet handlers for custom types of messages, in binary. */
@@ -438,6 +446,8 @@ public class NetClient implements ApplicationListener{
     public static void worldDataBegin(){
         Groups.clear();
         netClient.removed.clear();
+        netClient.receivedSnapshots.clear();
+        netClient.lastAckedSnapshot = -1;
         logic.reset();
         netClient.connecting = true;
 
@@ -475,9 +485,10 @@ public class NetClient implements ApplicationListener{
     }
 
     public static void readSyncEntity(DataInputStream input, Reads read) throws IOException{
-        int id = input.readInt();
-        byte typeID = input.readByte();
+        readSyncEntity(input.readInt(), input.readByte(), read);
+    }
 
+    public static void readSyncEntity(int id, byte typeID, Reads read){
         Syncc entity = Groups.sync.getByID(id);
         boolean add = false, created = false;
 
@@ -510,16 +521,71 @@ public class NetClient implements ApplicationListener{
         }
     }
 
+    /**
+     * An entity snapshot, or a part of one. Each entity is a full, unchanged or XOR record relative to the baseline snapshot, see {@link SnapshotHistory}.
+     * @param baselineID the acknowledged snapshot deltas are encoded against, or -1 if all records are full.
+     */
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void entitySnapshot(short amount, byte[] data){
+    public static void entitySnapshot(int snapshotID, int baselineID, short amount, byte[] data){
         try{
             netClient.lastSnapshotTimestamp = Time.millis();
             netClient.byteStream.setBytes(data);
             DataInputStream input = netClient.dataStream;
-            Reads reads = netClient.dataStreamReads;
+            SnapshotHistory history = netClient.receivedSnapshots;
+
+            //all parts of a snapshot share its ID, so only the first part starts recording it
+            if(!history.has(snapshotID)){
+                history.begin(snapshotID);
+            }
+
+            boolean desynced = false;
 
             for(int j = 0; j < amount; j++){
-                readSyncEntity(input, reads);
+                int id = input.readInt();
+                byte typeID = input.readByte();
+                byte record = input.readByte();
+
+                int length = record == SnapshotHistory.recordUnchanged ? -1 : input.readInt();
+                byte[] payload;
+
+                if(record == SnapshotHistory.recordFull){
+                    payload = netClient.payloadBuffer(length);
+                    input.readFully(payload, 0, length);
+                }else{
+                    int baseLength = history.length(baselineID, id);
+                    if(record == SnapshotHistory.recordUnchanged) length = baseLength;
+
+                    if(baseLength < 0 || baseLength != length){
+                        //the baseline was lost; skip this entity until a full snapshot arrives
+                        if(record == SnapshotHistory.recordXor) input.skipBytes(length);
+                        desynced = true;
+                        continue;
+                    }
+
+                    payload = netClient.payloadBuffer(length);
+                    byte[] base = history.bytes(baselineID);
+                    int offset = history.offset(baselineID, id);
+
+                    if(record == SnapshotHistory.recordXor){
+                        input.readFully(payload, 0, length);
+                        for(int i = 0; i < length; i++){
+                            payload[i] ^= base[offset + i];
+                        }
+                    }else{
+                        System.arraycopy(base, offset, payload, 0, length);
+                    }
+                }
+
+                history.put(snapshotID, id, payload, 0, length);
+                netClient.payloadStream.setBytes(payload);
+                readSyncEntity(id, typeID, netClient.payloadReads);
+            }
+
+            if(desynced){
+                Call.entitySnapshotAck(-1);
+            }else if(snapshotID > netClient.lastAckedSnapshot){
+                netClient.lastAckedSnapshot = snapshotID;
+                Call.entitySnapshotAck(snapshotID);
             }
         }catch(Exception e){
             //don't disconnect, just log it
@@ -527,6 +593,13 @@ public class NetClient implements ApplicationListener{
         }
     }
 
+    byte[] payloadBuffer(int length){
+        if(payloadBuffer.length < length){
+            payloadBuffer = new byte[Math.max(length, payloadBuffer.length * 2)];
+        }
+        return payloadBuffer;
+    }
+
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
     public static void hiddenSnapshot(IntSeq ids){
         for(int i = 0; i < ids.size; i++){
@@ -669,6 +742,8 @@ public class NetClient implements ApplicationListener{
     private void reset(){
         net.setClientLoaded(false);
         removed.clear();
+        receivedSnapshots.clear();
+        lastAckedSnapshot = -1;
         timeoutTime = 0f;
         connecting = true;
         quietReset = false;
@@ -38,7 +38,6 @@ import java.net.*;
 import java.nio.*;
 import java.util.Date;
 import java.util.regex.*;
-import java.util.zip.*;
 
 import static arc.util.Log.*;
 import static mindustry.Vars.*;
@@ -48,12 +47,21 @@ public class NetServer implements ApplicationListener{
     private static final int maxSnapshotSize = 800;
     private static final int timerBlockSync = 0, timerHealthSync = 1;
     private static final float blockSyncTime = 60 * 6, healthSyncTime = 30;
+    /** every n-th block snapshot contains all synced buildings, even unchanged ones. */
+    private static final int blockKeyframeInterval = 5;
+    /** Block snapshots are not acknowledged, so full ones are still sent every {@link #blockSyncTime} ticks; only changed buildings are sent in between. */
+    private static final float blockDeltaSyncTime = blockSyncTime / blockKeyframeInterval;
     private static final int defaultStartCountdownSeconds = 10;
     private static final int maxStartCountdownSeconds = 600;
     private static final Pattern startTimePattern = Pattern.compile("\\[@\\s*startTime\\s*=\\s*(\\d+)\\s*\\]", Pattern.CASE_INSENSITIVE);
     private static final FloatBuffer fbuffer = FloatBuffer.allocate(20);
     private static final Writes dataWrites = new Writes(null);
     private static final IntSeq hiddenIds = new IntSeq();
+    /** IDs of sync entities hidden from each team, indexed by team ID. Computed once per sync pass and shared by all players of that team. */
+    private static final IntSet[] teamHiddenSync = new IntSet[256];
+    /** Sync pass in which each entry of {@link #teamHiddenSync} was computed. Sync passes also scope the cached entity payloads; {@link #writeEntitySnapshot(Player)} assumes entities do not change within one. */
+    private static final int[] teamHiddenPass = new int[256];
+    private static int syncPass = 1;
     private static final IntSeq healthSeq = new IntSeq(maxSnapshotSize / 4 + 1);
     private static final Vec2 vector = new Vec2();
     private static final float identityPingInterval = 60f * 8f;
@@ -169,6 +177,16 @@ public class NetServer implements ApplicationListener{
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
     private Writes dataStreamWrites = new Writes(dataStream);
+    /** Stream for writing the sync payload of a single entity to, before it is delta-encoded. */
+    private ReusableByteOutStream payloadStream = new ReusableByteOutStream();
+    private Writes payloadWrites = new Writes(new DataOutputStream(payloadStream));
+    /** Sync payloads of all entities serialized during the current sync pass, shared by the snapshots of every player. */
+    private SnapshotHistory passPayloads = new SnapshotHistory(1);
+    /** Sync payloads of the buildings in recent block snapshots, keyed by position. */
+    private SnapshotHistory blockSnapshots = new SnapshotHistory();
+    private int blockSnapshotID;
+    /** Compressed world data shared by players joining in the same tick. */
+    private WorldDataCache worldDataCache = new WorldDataCache();
     /** Packet handlers for custom types of messages. */
     private ObjectMap<String, Seq<Cons2<Player, String>>> customPacketHandlers = new ObjectMap<>();
     /** Packet handlers for custom types of messages - binary version. */
@@ -228,6 +246,7 @@ public class NetServer implements ApplicationListener{
         });
 
         net.handleServer(Connect.class, (con, connect) -> {
+            con.batching = Config.packetBatching.bool();
             Events.fire(new ConnectionEvent(con));
 
             if(admins.isIPBanned(connect.addressTCP) || admins.isSubnetBanned(connect.addressTCP)){
@@ -371,6 +390,12 @@ public class NetServer implements ApplicationListener{
                 return;
             }
 
+            //builds of the same number can still differ in protocol, e.g. custom builds
+            if(packet.version != -1 && packet.protocol != Version.protocol){
+                con.kick(packet.protocol > Version.protocol ? KickReason.serverOutdated : KickReason.clientOutdated);
+                return;
+            }
+
             if(packet.version == -1){
                 con.modclient = true;
             }
@@ -2014,14 +2039,15 @@ public class NetServer implements ApplicationListener{
     }
 
     public void sendWorldData(Player player){
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
         WorldStream data = new WorldStream();
-        data.stream = new ByteArrayInputStream(stream.toByteArray());
+        data.slices = worldDataCache.writeSlices(player);
         player.con.sendStream(data);
 
-        debug("Packed @ bytes of world data to @ (@ / @)", stream.size(), player.name, player.con.address, player.uuid());
+        //the client discards its snapshot baselines when loading a world
+        player.con.snapshotBaseline = -1;
+        player.con.snapshotResyncID = player.con.nextSnapshotID;
+
+        debug("Packed @ bytes of world data to @ (@ / @)", Streamable.length(data.slices), player.name, player.con.address, player.uuid());
     }
 
     public void addPacketHandler(String type, Cons2<Player, String> handler){
@@ -2642,6 +2668,21 @@ public class NetServer implements ApplicationListener{
         });
     }
 
+    /** Acknowledges an entity snapshot, allowing it to be used as a delta baseline. A negative ID means the client lost track of its baselines. */
+    @Remote(targets = Loc.client, unreliable = true, priority = PacketPriority.high)
+    public static void entitySnapshotAck(Player player, int snapshotID){
+        NetConnection con = player.con;
+        if(con == null) return;
+
+        if(snapshotID < 0){
+            //only full records until the client acknowledges a snapshot sent from now on
+            con.snapshotBaseline = -1;
+            con.snapshotResyncID = con.nextSnapshotID;
+        }else if(snapshotID >= con.snapshotResyncID && snapshotID < con.nextSnapshotID && snapshotID > con.snapshotBaseline){
+            con.snapshotBaseline = snapshotID;
+        }
+    }
+
     @Remote(targets = Loc.client, unreliable = true, priority = PacketPriority.high)
     public static void clientSnapshot(
     Player player,
@@ -2931,7 +2972,9 @@ public class NetServer implements ApplicationListener{
                 }
             }
 
+            long syncStart = profiler.begin();
             sync();
+            profiler.end(profiler.netSync, syncStart);
 
             if(timer.get(2, identityPingInterval)){
                 Groups.player.each(p -> !p.isLocal(), this::sendIdentityPing);
@@ -2943,6 +2986,13 @@ public class NetServer implements ApplicationListener{
                 sendNextAlert();
             }
         }
+
+        if(net.server()){
+            //send everything batched during this update
+            for(NetConnection con : net.getConnections()){
+                con.flush();
+            }
+        }
     }
 
     //TODO I don't like where this is, move somewhere else?
@@ -2971,18 +3021,33 @@ public class NetServer implements ApplicationListener{
         }
     }
 
-    /** Sends a block snapshot to all players. */
+    /** Sends a block snapshot to all players. Buildings whose sync data did not change since the last snapshot are skipped, except for periodic full snapshots. */
     public void writeBlockSnapshots() throws IOException{
         syncStream.reset();
 
+        int snapshotID = blockSnapshotID++;
+        boolean keyframe = snapshotID % blockKeyframeInterval == 0;
+        blockSnapshots.begin(snapshotID);
+
         short sent = 0;
         for(var team : state.teams.present){
             for(var build : indexer.getFlagged(team.team, BlockFlag.synced)){
+                payloadStream.reset();
+                build.writeSync(payloadWrites);
+
+                int pos = build.pos(), length = payloadStream.size();
+                byte[] payload = payloadStream.getBytes();
+                blockSnapshots.put(snapshotID, pos, payload, 0, length);
+
+                if(!keyframe && samePayload(blockSnapshots, snapshotID - 1, pos, payload, 0, length)){
+                    continue;
+                }
+
                 sent++;
 
-                dataStream.writeInt(build.pos());
+                dataStream.writeInt(pos);
                 dataStream.writeShort(build.block.id);
-                build.writeSync(dataStreamWrites);
+                dataStream.write(payload, 0, length);
 
                 if(syncStream.size() > maxSnapshotSize){
                     dataStream.close();
@@ -3027,24 +3092,38 @@ public class NetServer implements ApplicationListener{
         int sent = 0;
         boolean observer = isObserver(player);
 
+        IntSet hidden = hiddenSync(player);
+
+        //entities are delta-encoded against the last snapshot the client acknowledged, if it is still known
+        NetConnection con = player.con;
+        SnapshotHistory history = con.sentSnapshots;
+        int snapshotID = con.nextSnapshotID++;
+        history.begin(snapshotID);
+        int baseline = history.has(con.snapshotBaseline) ? con.snapshotBaseline : -1;
+
         for(Syncc entity : Groups.sync){
             //TODO write to special list
-            if(entity.isSyncHidden(player) || (observer && isOutsideObserverView(player, entity))){
+            if(hidden.contains(entity.id()) || (observer && isOutsideObserverView(player, entity))){
                 hiddenIds.add(entity.id());
                 continue;
             }
 
+            //each entity is only serialized once per sync pass, no matter how many players see it
+            int id = entity.id(), length = syncPayload(entity);
+            byte[] payload = passPayloads.bytes(syncPass);
+            int offset = passPayloads.offset(syncPass, id);
+            history.put(snapshotID, id, payload, offset, length);
+
             //write all entities now
-            dataStream.writeInt(entity.id()); //write id
+            dataStream.writeInt(id); //write id
             dataStream.writeByte(entity.classId() & 0xFF); //write type ID
-            entity.beforeWrite();
-            entity.writeSync(dataStreamWrites); //write entity itself
+            writeSyncRecord(history, baseline, id, payload, offset, length);
 
             sent++;
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
-                Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
+                Call.entitySnapshot(con, snapshotID, baseline, (short)sent, syncStream.toByteArray());
                 sent = 0;
                 syncStream.reset();
             }
@@ -3053,7 +3132,7 @@ public class NetServer implements ApplicationListener{
         if(sent > 0){
             dataStream.close();
 
-            Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
+            Call.entitySnapshot(con, snapshotID, baseline, (short)sent, syncStream.toByteArray());
         }
 
         if(hiddenIds.size > 0){
@@ -3063,6 +3142,92 @@ public class NetServer implements ApplicationListener{
         player.con.snapshotsSent++;
     }
 
+    /**
+     * Serializes the sync payload of an entity into the payloads of the current sync pass, unless that already happened.
+     * @return the length of the payload.
+     */
+    int syncPayload(Syncc entity){
+        if(!passPayloads.has(syncPass)){
+            passPayloads.begin(syncPass);
+        }
+
+        int id = entity.id();
+        int length = passPayloads.length(syncPass, id);
+        if(length == -1){
+            payloadStream.reset();
+            entity.beforeWrite();
+            entity.writeSync(payloadWrites);
+
+            length = payloadStream.size();
+            passPayloads.put(syncPass, id, payloadStream.getBytes(), 0, length);
+        }
+        return length;
+    }
+
+    /** @return whether the payload equals the one recorded for this key in the baseline snapshot. */
+    static boolean samePayload(SnapshotHistory history, int baseline, int key, byte[] payload, int payloadOffset, int length){
+        if(history.length(baseline, key) != length) return false;
+
+        byte[] base = history.bytes(baseline);
+        int offset = history.offset(baseline, key);
+        for(int i = 0; i < length; i++){
+            if(payload[payloadOffset + i] != base[offset + i]) return false;
+        }
+        return true;
+    }
+
+    /** Writes an entity payload as a full, unchanged or XOR record, depending on what the baseline snapshot has for it. */
+    void writeSyncRecord(SnapshotHistory history, int baseline, int id, byte[] payload, int payloadOffset, int length) throws IOException{
+        int baseLength = baseline == -1 ? -1 : history.length(baseline, id);
+
+        if(baseLength != length){
+            dataStream.writeByte(SnapshotHistory.recordFull);
+            dataStream.writeInt(length);
+            dataStream.write(payload, payloadOffset, length);
+            return;
+        }
+
+        if(samePayload(history, baseline, id, payload, payloadOffset, length)){
+            dataStream.writeByte(SnapshotHistory.recordUnchanged);
+            return;
+        }
+
+        byte[] base = history.bytes(baseline);
+        int offset = history.offset(baseline, id);
+
+        //unchanged bytes become zero runs, which compress well
+        dataStream.writeByte(SnapshotHistory.recordXor);
+        dataStream.writeInt(length);
+        for(int i = 0; i < length; i++){
+            dataStream.writeByte(payload[payloadOffset + i] ^ base[offset + i]);
+        }
+    }
+
+    /**
+     * @return IDs of the sync entities that are hidden from this player's team. Sync hiding only depends on the viewing team,
+     * so the expensive fog checks are done once per team and sync pass instead of once per player.
+     */
+    IntSet hiddenSync(Player player){
+        int team = player.team().id;
+        IntSet hidden = teamHiddenSync[team];
+        if(hidden == null){
+            hidden = teamHiddenSync[team] = new IntSet();
+        }
+
+        if(teamHiddenPass[team] != syncPass){
+            teamHiddenPass[team] = syncPass;
+            hidden.clear();
+
+            for(Syncc entity : Groups.sync){
+                if(entity.isSyncHidden(player)){
+                    hidden.add(entity.id());
+                }
+            }
+        }
+
+        return hidden;
+    }
+
     public String fixName(String name){
         name = name.trim().replace("\n", "").replace("\t", "");
         if(name.equals("[") || name.equals("]")){
@@ -3372,6 +3537,9 @@ public class NetServer implements ApplicationListener{
 
     void sync(){
         try{
+            //entity visibility may have changed since the last pass
+            syncPass ++;
+
             Groups.player.each(p -> !p.isLocal(), player -> {
                 if(player.con == null || !player.con.isConnected()){
                     onDisconnect(player, "disappeared");
@@ -3392,7 +3560,7 @@ public class NetServer implements ApplicationListener{
                 }
             });
 
-            if(Groups.player.size() > 0 && Core.settings.getBool("blocksync") && timer.get(timerBlockSync, blockSyncTime)){
+            if(Groups.player.size() > 0 && Core.settings.getBool("blocksync") && timer.get(timerBlockSync, blockDeltaSyncTime)){
                 writeBlockSnapshots();
             }
 
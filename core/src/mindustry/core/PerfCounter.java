@@ -9,7 +9,11 @@ public enum PerfCounter{
     update,
     entityUpdate,
     ui,
-    render;
+    render,
+    /** Time spent in {@link mindustry.async.PhysicsProcess#process()}, on an async thread. */
+    physics,
+    /** Time spent in {@link mindustry.async.AvoidanceProcess#process()}, on an async thread. */
+    avoidance;
 
     public static final PerfCounter[] all = values();
 
@@ -31,7 +35,12 @@ public enum PerfCounter{
     public void end(){
         if(!began) return;
         began = false;
-        mean.add(Time.timeSinceNanos(beginTime));
+        record(Time.timeSinceNanos(beginTime));
+    }
+
+    /** Records time that was measured elsewhere, e.g. on another thread. */
+    public synchronized void record(long nanos){
+        mean.add(nanos);
     }
 
     /** Value with a periodic refresh interval applied, to prevent jittery UI. */
@@ -44,11 +53,11 @@ public enum PerfCounter{
     }
 
     /** Raw value without a refresh interval. This will be unstable. */
-    public float rawValueMs(){
+    public synchronized float rawValueMs(){
         return mean.rawMean() / Time.nanosPerMilli;
     }
 
-    public long rawValueNs(){
+    public synchronized long rawValueNs(){
         return (long)mean.rawMean();
     }
 }
@@ -0,0 +1,289 @@
+package mindustry.core;
+
+import arc.struct.*;
+import arc.util.*;
+import mindustry.type.*;
+import mindustry.world.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Hierarchical profiler for the game tick. Unlike {@link PerfCounter}, every section keeps a histogram of its time per tick, so slow outlier ticks show up in the percentiles.
+ * Sections accumulate time until {@link #endTick()} records one sample per section that ran.
+ * Disabled by default; while disabled, {@link #begin()} returns 0 and nothing is measured.
+ */
+public class TickProfiler{
+    /** Amount of sections listed per content type in reports. */
+    public static final int maxContentReport = 15;
+
+    public volatile boolean enabled;
+
+    public final Section root = new Section("tick", null);
+    /** Stages of {@link Logic#update()}. */
+    public final Section
+    logic = root.child("logic"),
+    teams = logic.child("teams"),
+    fog = logic.child("fog"),
+    teamAi = logic.child("teamAi"),
+    weather = logic.child("weather"),
+    objectives = logic.child("objectives"),
+    waves = logic.child("waves"),
+    entities = logic.child("entities"),
+    blocks = entities.child("blocks"),
+    units = entities.child("units"),
+    async = root.child("async"),
+    netSync = root.child("netSync");
+
+    private Section[] blockSections = {}, unitSections = {};
+    private long lastTick;
+
+    /** @return the start time of a measurement, or 0 if the profiler is disabled. */
+    public long begin(){
+        return enabled ? Time.nanos() : 0L;
+    }
+
+    /** Ends a measurement started with {@link #begin()}. Thread-safe. */
+    public void end(Section section, long start){
+        if(start != 0L){
+            section.add(Time.timeSinceNanos(start));
+        }
+    }
+
+    /** @return the section of a block's building updates. */
+    public Section block(Block block){
+        if(block.id >= blockSections.length){
+            blockSections = Arrays.copyOf(blockSections, block.id + 64);
+        }
+        Section section = blockSections[block.id];
+        if(section == null) section = blockSections[block.id] = blocks.child(block.name);
+        return section;
+    }
+
+    /** @return the section of a unit type's updates. */
+    public Section unit(UnitType type){
+        if(type.id >= unitSections.length){
+            unitSections = Arrays.copyOf(unitSections, type.id + 64);
+        }
+        Section section = unitSections[type.id];
+        if(section == null) section = unitSections[type.id] = units.child(type.name);
+        return section;
+    }
+
+    /** Records the time accumulated by every section since the last call as one sample. The root section records the time between calls. Called once per tick. */
+    public void endTick(){
+        if(!enabled){
+            lastTick = 0L;
+            return;
+        }
+
+        long now = Time.nanos();
+        if(lastTick != 0L) root.add(now - lastTick);
+        lastTick = now;
+        root.commit();
+    }
+
+    /** Clears all recorded samples. */
+    public void reset(){
+        root.reset();
+    }
+
+    /** @return a human-readable table of all sections. Content sections are limited to the slowest ones. */
+    public String report(){
+        StringBuilder out = new StringBuilder();
+        out.append(Strings.format("@ @ @ @ @ @ @\n", pad("section", 36), pad("ticks", 8), pad("mean", 8), pad("p50", 8), pad("p95", 8), pad("p99", 8), "max (ms)"));
+        report(out, root, 0);
+        return out.toString();
+    }
+
+    private void report(StringBuilder out, Section section, int depth){
+        Histogram h = section.histogram;
+        out.append(Strings.format("@ @ @ @ @ @ @\n",
+            pad(indent(depth) + section.name, 36), pad(String.valueOf(section.ticks), 8), pad(ms(section.meanNanos()), 8),
+            pad(ms(h.percentile(0.5f)), 8), pad(ms(h.percentile(0.95f)), 8), pad(ms(h.percentile(0.99f)), 8), ms(h.max)));
+
+        Seq<Section> children = section.sortedChildren();
+        boolean content = section == blocks || section == units;
+        for(int i = 0; i < children.size; i++){
+            if(content && i >= maxContentReport){
+                out.append(indent(depth + 1)).append("(").append(children.size - i).append(" more)\n");
+                break;
+            }
+            report(out, children.get(i), depth + 1);
+        }
+    }
+
+    /** @return every section with its full histogram summary as JSON. Times are in milliseconds. */
+    public String toJson(){
+        StringBuilder out = new StringBuilder();
+        json(out, root);
+        return out.toString();
+    }
+
+    private void json(StringBuilder out, Section section){
+        Histogram h = section.histogram;
+        out.append("{\"name\":\"").append(section.name.replace("\\", "\\\\").replace("\"", "\\\""))
+        .append("\",\"ticks\":").append(section.ticks)
+        .append(",\"calls\":").append(section.calls)
+        .append(",\"total\":").append(section.totalNanos / (double)Time.nanosPerMilli)
+        .append(",\"mean\":").append(section.meanNanos() / (double)Time.nanosPerMilli)
+        .append(",\"min\":").append(h.count == 0 ? 0 : h.min / (double)Time.nanosPerMilli)
+        .append(",\"max\":").append(h.max / (double)Time.nanosPerMilli);
+
+        for(float p : new float[]{0.5f, 0.9f, 0.95f, 0.99f, 0.999f}){
+            out.append(",\"p").append(Strings.autoFixed(p * 100f, 1).replace(".", "_")).append("\":").append(h.percentile(p) / (double)Time.nanosPerMilli);
+        }
+
+        out.append(",\"children\":[");
+        Seq<Section> children = section.sortedChildren();
+        for(int i = 0; i < children.size; i++){
+            if(i > 0) out.append(',');
+            json(out, children.get(i));
+        }
+        out.append("]}");
+    }
+
+    private static String ms(long nanos){
+        return Strings.fixed(nanos / (float)Time.nanosPerMilli, 3);
+    }
+
+    private static String pad(String text, int length){
+        StringBuilder out = new StringBuilder(text);
+        while(out.length() < length) out.append(' ');
+        return out.toString();
+    }
+
+    private static String indent(int depth){
+        return pad("", depth * 2);
+    }
+
+    /** A named part of the tick, with the time it took per tick. */
+    public static class Section{
+        public final String name;
+        public final @Nullable Section parent;
+        public final Histogram histogram = new Histogram();
+        /** Amount of ticks this section ran in, times it was entered, and total time across all of them. */
+        public long ticks, calls, totalNanos;
+
+        private final Seq<Section> children = new Seq<>();
+        private final AtomicLong tickNanos = new AtomicLong();
+        private final AtomicInteger tickCalls = new AtomicInteger();
+
+        Section(String name, @Nullable Section parent){
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /** @return the child section with this name, which is created if it does not exist yet. Thread-safe. */
+        public Section child(String name){
+            synchronized(children){
+                for(int i = 0; i < children.size; i++){
+                    if(children.get(i).name.equals(name)) return children.get(i);
+                }
+                Section child = new Section(name, this);
+                children.add(child);
+                return child;
+            }
+        }
+
+        /** Adds time to the current tick. Thread-safe. */
+        public void add(long nanos){
+            tickNanos.addAndGet(nanos);
+            tickCalls.incrementAndGet();
+        }
+
+        public long meanNanos(){
+            return ticks == 0 ? 0 : totalNanos / ticks;
+        }
+
+        /** @return children, slowest first. */
+        Seq<Section> sortedChildren(){
+            synchronized(children){
+                return children.copy().sort(s -> -s.totalNanos);
+            }
+        }
+
+        void commit(){
+            int count = tickCalls.getAndSet(0);
+            long nanos = tickNanos.getAndSet(0);
+            if(count > 0){
+                histogram.record(nanos);
+                ticks++;
+                calls += count;
+                totalNanos += nanos;
+            }
+
+            synchronized(children){
+                for(int i = 0; i < children.size; i++){
+                    children.get(i).commit();
+                }
+            }
+        }
+
+        void reset(){
+            histogram.clear();
+            ticks = calls = totalNanos = 0;
+            tickNanos.set(0);
+            tickCalls.set(0);
+
+            synchronized(children){
+                for(int i = 0; i < children.size; i++){
+                    children.get(i).reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Log-linear histogram of nanosecond values: every power of two is split into {@link #subBuckets} buckets,
+     * so percentiles are accurate to within about 1/{@link #subBuckets} of their value.
+     */
+    public static class Histogram{
+        static final int subBits = 3, subBuckets = 1 << subBits;
+
+        final long[] counts = new long[(64 - subBits + 1) * subBuckets];
+        public long count, min = Long.MAX_VALUE, max;
+
+        public void record(long value){
+            value = Math.max(value, 0);
+            counts[bucket(value)]++;
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        /** @return the approximate value below which the specified fraction of samples lies. */
+        public long percentile(float fraction){
+            if(count == 0) return 0;
+
+            long target = Math.max((long)Math.ceil(count * (double)fraction), 1), seen = 0;
+            for(int i = 0; i < counts.length; i++){
+                seen += counts[i];
+                if(seen >= target){
+                    return Math.min(Math.max(upperBound(i), min), max);
+                }
+            }
+            return max;
+        }
+
+        public void clear(){
+            Arrays.fill(counts, 0);
+            count = max = 0;
+            min = Long.MAX_VALUE;
+        }
+
+        static int bucket(long value){
+            if(value < subBuckets) return (int)value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - subBits;
+            return (exponent + 1) * subBuckets + (int)((value >>> exponent) & (subBuckets - 1));
+        }
+
+        /** @return the largest value that falls into a bucket. */
+        static long upperBound(int bucket){
+            if(bucket < subBuckets) return bucket;
+            int exponent = bucket / subBuckets - 1;
+            long mantissa = subBuckets + bucket % subBuckets;
+            return ((mantissa + 1) << exponent) - 1;
+        }
+    }
+}
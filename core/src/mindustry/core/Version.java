@@ -22,6 +22,12 @@ public class Version{
     public static int build = 0;
     /** Revision number. Used for hotfixes. Does not affect server compatibility. */
     public static int revision = 0;
+    /**
+     * Revision of the network protocol, checked on connect in addition to the build number.
+     * Increment whenever packets change in a way older builds can't read.
+     * 1: entity snapshots are delta-compressed against an acknowledged baseline.
+     */
+    public static final int protocol = 1;
     /** Whether version loading is enabled. */
     public static boolean enabled = true;
 
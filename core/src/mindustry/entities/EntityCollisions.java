@@ -26,6 +26,8 @@ public class EntityCollisions{
     private Seq<Hitboxc> arrOut = new Seq<>(Hitboxc.class);
     private Cons<Hitboxc> hitCons = this::updateCollision;
     private Cons<QuadTree> treeCons = tree -> tree.intersect(r2, arrOut);
+    private Cons<Unit> unitOut = arrOut::add;
+    private Cons<UnitGrid> gridCons = grid -> grid.intersect(r2, unitOut);
 
     public void moveCheck(Hitboxc entity, float deltax, float deltay, SolidPred solidCheck){
         if(!solidCheck.solid(entity.tileX(), entity.tileY())){
@@ -399,6 +401,7 @@ public class EntityCollisions{
 
         //get all targets based on what entity wants to collide with
         solid.getCollisions(treeCons);
+        solid.getUnitCollisions(gridCons);
 
         var items = arrOut.items;
         int size = arrOut.size;
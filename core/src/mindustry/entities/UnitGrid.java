@@ -0,0 +1,175 @@
+package mindustry.entities;
+
+import arc.func.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import mindustry.game.*;
+import mindustry.gen.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Persistent spatial hash of the units of one team, used in place of a per-frame {@link QuadTree} rebuild.
+ * Units are bucketed by the cell that contains their center and are only moved when they cross into another cell.
+ * Queries widen their search by the largest indexed hitbox and then check actual hitboxes, so they return exactly what a quadtree would.
+ */
+public class UnitGrid{
+    /** Size of one cell in world units. */
+    public static final float cellSize = 8f * tilesize;
+
+    private final Team team;
+    private final float originX, originY;
+    private final int width, height;
+    private final Seq<Unit>[] cells;
+    /** Every indexed unit. */
+    private final Seq<Unit> members = new Seq<>(false, 16, Unit.class);
+    /** Maps unit ID to the index of the cell it is stored in. */
+    private final IntIntMap cellOf = new IntIntMap();
+    /** Largest half-size of any indexed hitbox. Only grows until the grid is cleared. */
+    private float maxHalfSize;
+    private final Rect hit = new Rect();
+
+    @SuppressWarnings("unchecked")
+    public UnitGrid(Team team, Rect bounds){
+        this.team = team;
+        this.originX = bounds.x;
+        this.originY = bounds.y;
+        this.width = Math.max((int)Math.ceil(bounds.width / cellSize), 1);
+        this.height = Math.max((int)Math.ceil(bounds.height / cellSize), 1);
+        this.cells = new Seq[width * height];
+    }
+
+    /** Adds a unit, or moves it to a different cell if its center left its current one. */
+    public void update(Unit unit){
+        int cell = cell(unit.x, unit.y);
+        int current = cellOf.get(unit.id, -1);
+
+        maxHalfSize = Math.max(maxHalfSize, unit.hitSize / 2f);
+
+        if(current == cell) return;
+
+        if(current == -1){
+            members.add(unit);
+        }else{
+            cells[current].remove(unit, true);
+        }
+
+        if(cells[cell] == null) cells[cell] = new Seq<>(false, 8, Unit.class);
+        cells[cell].add(unit);
+        cellOf.put(unit.id, cell);
+    }
+
+    /** Removes every unit that is no longer added or has changed teams. Units updated this frame through {@link #update(Unit)} are always kept. */
+    public void removeStale(){
+        Unit[] items = members.items;
+        for(int i = members.size - 1; i >= 0; i--){
+            Unit unit = items[i];
+            if(!unit.isAdded() || unit.team != team || unit.type == null){
+                removeIndex(i);
+            }
+        }
+    }
+
+    /** @return the amount of indexed units. */
+    public int size(){
+        return members.size;
+    }
+
+    /** Removes a unit from the grid. */
+    public void remove(Unit unit){
+        int index = members.indexOf(unit, true);
+        if(index != -1) removeIndex(index);
+    }
+
+    /** Removes all units. */
+    public void clear(){
+        for(var cell : cells){
+            if(cell != null) cell.clear();
+        }
+        members.clear();
+        cellOf.clear();
+        maxHalfSize = 0f;
+    }
+
+    /** Calls the consumer for every unit whose hitbox overlaps the rectangle. */
+    public void intersect(float x, float y, float width, float height, Cons<Unit> out){
+        int minX = cellX(x - maxHalfSize), minY = cellY(y - maxHalfSize), maxX = cellX(x + width + maxHalfSize), maxY = cellY(y + height + maxHalfSize);
+
+        for(int cy = minY; cy <= maxY; cy++){
+            for(int cx = minX; cx <= maxX; cx++){
+                var cell = cells[cx + cy * this.width];
+                if(cell == null) continue;
+
+                //callbacks may query the grid again, but never modify it
+                Unit[] items = cell.items;
+                for(int i = 0, n = cell.size; i < n; i++){
+                    Unit unit = items[i];
+                    if(overlaps(unit, x, y, width, height)){
+                        out.get(unit);
+                    }
+                }
+            }
+        }
+    }
+
+    public void intersect(float x, float y, float width, float height, Seq<Unit> out){
+        intersect(x, y, width, height, out::add);
+    }
+
+    public void intersect(Rect rect, Cons<Unit> out){
+        intersect(rect.x, rect.y, rect.width, rect.height, out);
+    }
+
+    public void intersect(Rect rect, Seq<Unit> out){
+        intersect(rect.x, rect.y, rect.width, rect.height, out::add);
+    }
+
+    /** @return whether the hitbox of any unit overlaps the rectangle. */
+    public boolean any(float x, float y, float width, float height){
+        int minX = cellX(x - maxHalfSize), minY = cellY(y - maxHalfSize), maxX = cellX(x + width + maxHalfSize), maxY = cellY(y + height + maxHalfSize);
+
+        for(int cy = minY; cy <= maxY; cy++){
+            for(int cx = minX; cx <= maxX; cx++){
+                var cell = cells[cx + cy * this.width];
+                if(cell == null) continue;
+
+                Unit[] items = cell.items;
+                for(int i = 0, n = cell.size; i < n; i++){
+                    if(overlaps(items[i], x, y, width, height)){
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Adds every indexed unit to the output. */
+    public void getObjects(Seq<Unit> out){
+        out.addAll(members);
+    }
+
+    private boolean overlaps(Unit unit, float x, float y, float width, float height){
+        unit.hitbox(hit);
+        return hit.x < x + width && hit.x + hit.width > x && hit.y < y + height && hit.y + hit.height > y;
+    }
+
+    private void removeIndex(int index){
+        Unit unit = members.items[index];
+        int cell = cellOf.remove(unit.id, -1);
+        if(cell != -1) cells[cell].remove(unit, true);
+        members.remove(index);
+    }
+
+    private int cell(float x, float y){
+        return cellX(x) + cellY(y) * width;
+    }
+
+    private int cellX(float x){
+        return Math.min(Math.max((int)((x - originX) / cellSize), 0), width - 1);
+    }
+
+    private int cellY(float y){
+        return Math.min(Math.max((int)((y - originY) / cellSize), 0), height - 1);
+    }
+}
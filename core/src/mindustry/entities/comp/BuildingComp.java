@@ -101,6 +101,10 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     private transient boolean sleeping;
     private transient float sleepTime;
+    /** Dormancy state; see {@link #doze(int, float)}. */
+    private transient boolean dormant;
+    private transient int wakeFlags;
+    private transient float wakeTime, dormantTime;
     private transient boolean initialized;
 
     /** Sets this tile entity data to this and adds it if necessary. */
@@ -278,6 +282,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     }
 
     public void readAll(Reads read, byte revision){
+        wakeUp();
         readBase(read);
         read(read, revision);
     }
@@ -456,6 +461,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     /** Sets the time scale of the building to the given intensity, unless it's above that value */
     public void applyBoost(float intensity, float duration){
+        updateDormantBoost();
         //do not refresh time scale when getting a lower intensity
         if(intensity >= this.timeScale - 0.001f){
             timeScaleDuration = Math.max(timeScaleDuration, duration);
@@ -465,6 +471,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     /** Sets the time scale of the building to the given intensity, unless it's below that value */
     public void applySlowdown(float intensity, float duration){
+        updateDormantBoost();
         //do not refresh time scale when getting a higher intensity
         if(intensity <= this.timeScale + 0.001f){
             timeScaleDuration = Math.max(timeScaleDuration, duration);
@@ -649,6 +656,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     /** Call when this entity is updating. This wakes it up. */
     public void noSleep(){
+        wakeUp();
         sleepTime = 0f;
         if(sleeping){
             add();
@@ -657,6 +665,51 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         }
     }
 
+    /**
+     * Skips the updates of this building until one of the specified events happens or the timeout passes.
+     * Call from {@link #updateTile()} when updating would not change anything until then.
+     * Unlike {@link #sleep()}, the building is not removed from its groups; dormant buildings return from {@link #update()} immediately.
+     * @param flags {@link WakeFlag}s that wake this building.
+     * @param timeout time in ticks after which the building wakes by itself.
+     */
+    public void doze(int flags, float timeout){
+        if(!dormant){
+            dormant = true;
+            dormantTime = Time.time;
+        }
+        wakeFlags = flags;
+        wakeTime = Time.time + timeout;
+    }
+
+    /** Wakes this building if it is dormant and waiting for any of the specified {@link WakeFlag}s. */
+    public void wake(int flags){
+        if(dormant && (wakeFlags & flags) != 0){
+            wakeUp();
+        }
+    }
+
+    /** Wakes this building if it is dormant, regardless of what it is waiting for. */
+    public void wakeUp(){
+        if(dormant){
+            updateDormantBoost();
+            dormant = false;
+        }
+    }
+
+    /** Boosts wear off as usual while dormant: subtracts the time spent dormant since the last call, so boosts applied in the meantime keep their full duration. */
+    private void updateDormantBoost(){
+        if(!dormant) return;
+
+        if((timeScaleDuration -= Time.time - dormantTime) <= 0f){
+            timeScale = 1f;
+        }
+        dormantTime = Time.time;
+    }
+
+    public boolean isDormant(){
+        return dormant;
+    }
+
     /** Returns the version of this Building IO code.*/
     public byte version(){
         return 0;
@@ -850,6 +903,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     }
 
     public void handleItem(Building source, Item item){
+        wake(WakeFlag.items);
         items.add(item, 1);
     }
 
@@ -862,6 +916,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     }
 
     public void handleLiquid(Building source, Liquid liquid, float amount){
+        wake(WakeFlag.liquids);
         liquids.add(liquid, amount);
     }
 
@@ -1393,6 +1448,8 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
             updateLastAccess(builder.getPlayer());
         }
 
+        wake(WakeFlag.control);
+
         if(block.configurations.containsKey(type)){
             block.configurations.get(type).get(this, value);
         }else if(value instanceof Building build){
@@ -2014,6 +2071,8 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     public void damage(float damage){
         if(dead()) return;
 
+        wake(WakeFlag.damage);
+
         float dm = state.rules.blockHealth(team);
         lastDamageTime = Time.time;
 
@@ -2216,6 +2275,12 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     @Replace
     @Override
     public void update(){
+        if(dormant){
+            if(Time.time < wakeTime) return;
+            wakeUp();
+        }
+
+        long profileStart = profiler.begin();
 
         //TODO refactor to timestamp-based system?
         if((timeScaleDuration -= Time.delta) <= 0f || !block.canOverdrive){
@@ -2232,6 +2297,10 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         if(enabled || !block.noUpdateDisabled){
             updateTile();
         }
+
+        if(profileStart != 0L){
+            profiler.end(profiler.block(block), profileStart);
+        }
     }
 
     /** When a block is newly revealed outside of camera view range, it is updated on the minimap. */
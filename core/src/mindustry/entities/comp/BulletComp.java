@@ -55,7 +55,7 @@ abstract class BulletComp implements Timedc, Damagec, Hitboxc, Teamc, Posc, Draw
     transient float stickyX, stickyY, stickyRotation, stickyRotationOffset;
 
     @Override
-    public void getCollisions(Cons<QuadTree> consumer){
+    public void getUnitCollisions(Cons<UnitGrid> consumer){
         Seq<TeamData> data = state.teams.present;
         for(int i = 0; i < data.size; i++){
             if(data.items[i].team != team){
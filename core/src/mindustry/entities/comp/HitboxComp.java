@@ -38,6 +38,11 @@ abstract class HitboxComp implements Posc, Sized, QuadTreeObject{
 
     }
 
+    /** Like {@link #getCollisions(Cons)}, for the unit grids of teams. */
+    void getUnitCollisions(Cons<UnitGrid> consumer){
+
+    }
+
     void updateLastPosition(){
         deltaX = x - lastX;
         deltaY = y - lastY;
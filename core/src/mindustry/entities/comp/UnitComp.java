@@ -748,6 +748,7 @@ abstract class UnitComp implements Healthc, Physicsc, Hitboxc, Statusc, Teamc, I
 
     @Override
     public void update(){
+        long profileStart = profiler.begin();
 
         type.update(self());
 
@@ -1053,6 +1054,10 @@ abstract class UnitComp implements Healthc, Physicsc, Hitboxc, Statusc, Teamc, I
         if(spawnedByCore && !isPlayer() && !dead){
             Call.unitDespawn(self());
         }
+
+        if(profileStart != 0L){
+            profiler.end(profiler.unit(type), profileStart);
+        }
     }
 
     public boolean shouldUpdateController(){
@@ -7,6 +7,7 @@ import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
 import mindustry.annotations.Annotations.*;
+import mindustry.async.*;
 import mindustry.core.*;
 import mindustry.game.EventType.*;
 import mindustry.gen.*;
@@ -17,13 +18,13 @@ import mindustry.world.blocks.environment.*;
 import mindustry.world.meta.*;
 
 import java.io.*;
+import java.util.concurrent.atomic.*;
 
 import static mindustry.Vars.*;
 
 public final class FogControl implements CustomChunk{
     private static volatile int ww, wh;
     private static final int dynamicUpdateInterval = 1000 / 25; //25 FPS
-    private static final Object notifyStatic = new Object(), notifyDynamic = new Object();
     private static final int fogIgnoreHeightBit = 0b1000_0000_0000_0000;
     private static final int fogViewerMask = 0b0110_0000_0000_0000;
     private static final int fogViewerShift = 13;
@@ -31,14 +32,8 @@ public final class FogControl implements CustomChunk{
 
     /** indexed by team */
     private volatile @Nullable FogData[] fog;
-
-    private final LongSeq staticEvents = new LongSeq();
-    private final LongSeq dynamicEventQueue = new LongSeq(), unitEventQueue = new LongSeq();
-    /** access must be synchronized; accessed from both threads */
-    private final LongSeq dynamicEvents = new LongSeq(100);
-
-    private @Nullable Thread staticFogThread;
-    private @Nullable Thread dynamicFogThread;
+    /** per-height vision occlusion of every tile, kept in sync with tile changes */
+    private final FogOcclusion occlusion = new FogOcclusion();
 
     private boolean justLoaded = false;
     private boolean loadedStatic = false;
@@ -57,6 +52,10 @@ public final class FogControl implements CustomChunk{
             ww = world.width();
             wh = world.height();
 
+            if(state.rules.fog){
+                occlusion.rebuild();
+            }
+
             //all old buildings have static light scheduled around them
             if(state.rules.fog && state.rules.staticFog){
                 pushStaticBlocks(true);
@@ -75,13 +74,10 @@ public final class FogControl implements CustomChunk{
                 }
 
                 if(state.rules.staticFog){
-                    synchronized(staticEvents){
-                        //TODO event per team?
-                        Building build = event.tile.build;
-                        int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
-                        int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
-                        pushEvent(FogEvent.get(event.tile.x, event.tile.y, encodedRadius, build.team.id), false);
-                    }
+                    Building build = event.tile.build;
+                    int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
+                    int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
+                    pushEvent(FogEvent.get(event.tile.x, event.tile.y, encodedRadius, build.team.id), false);
                 }
             }
         });
@@ -96,6 +92,25 @@ public final class FogControl implements CustomChunk{
             }
         });
 
+        //walls that appear or disappear invalidate the dynamic footprints of every viewer
+        Events.on(TileChangeEvent.class, e -> {
+            if(state.rules.fog && occlusion.update(e.tile)){
+                invalidateDynamic();
+            }
+        });
+
+        Events.on(TileFloorChangeEvent.class, e -> {
+            if(state.rules.fog && occlusion.update(e.tile)){
+                invalidateDynamic();
+            }
+        });
+
+        Events.on(TileOverlayChangeEvent.class, e -> {
+            if(state.rules.fog && occlusion.update(e.tile)){
+                invalidateDynamic();
+            }
+        });
+
         //unit dead -> fog updates
         Events.on(UnitDestroyEvent.class, e -> {
             if(state.rules.fog && fog[e.unit.team.id] != null){
@@ -139,47 +154,49 @@ public final class FogControl implements CustomChunk{
         return fog == null || fog[team.id] == null ? null : fog[team.id];
     }
 
+    /** Forces all dynamic fog to be rebuilt from scratch on the next update. Call when vision occlusion changes. */
+    public void invalidateDynamic(){
+        if(fog == null) return;
+
+        for(var data : fog){
+            if(data != null){
+                data.rebuildDynamic = true;
+                data.dynamicUpdated = true;
+            }
+        }
+    }
+
     void stop(){
         lastEntityUpdateIndex = 0;
+        //jobs that are still running only hold on to the old fog data, which is discarded here
         fog = null;
-        //I don't care whether the fog thread crashes here, it's about to die anyway
-        staticEvents.clear();
-        if(staticFogThread != null){
-            staticFogThread.interrupt();
-            staticFogThread = null;
-        }
-
-        dynamicEvents.clear();
-        if(dynamicFogThread != null){
-            dynamicFogThread.interrupt();
-            dynamicFogThread = null;
-        }
     }
 
     /** @param initial whether this is the initial update; if true, does not update renderer */
     void pushStaticBlocks(boolean initial){
         if(fog == null) fog = new FogData[256];
 
-        synchronized(staticEvents){
-            for(var build : Groups.build){
-                if(build.block.flags.contains(BlockFlag.hasFogRadius)){
-                    if(fog[build.team.id] == null){
-                        fog[build.team.id] = new FogData();
-                    }
-
-                    int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
-                    int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
-                    pushEvent(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id), initial);
+        for(var build : Groups.build){
+            if(build.block.flags.contains(BlockFlag.hasFogRadius)){
+                if(fog[build.team.id] == null){
+                    fog[build.team.id] = new FogData();
                 }
+
+                int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
+                int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
+                pushEvent(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id), initial);
             }
         }
     }
 
-    /** @param skipRender whether the event is passed to the fog renderer */
+    /** Queues a static fog event for its team. Main thread only. @param skipRender whether the event is passed to the fog renderer */
     void pushEvent(long event, boolean skipRender){
-        if(!state.rules.staticFog) return;
+        if(!state.rules.staticFog || fog == null) return;
+
+        var data = fog[FogEvent.team(event)];
+        if(data == null) return;
 
-        staticEvents.add(event);
+        data.staticQueue.add(event);
         if(!skipRender && !headless && FogEvent.team(event) == Vars.player.team().id){
             renderer.fog.handleEvent(event);
         }
@@ -190,11 +207,9 @@ public final class FogControl implements CustomChunk{
             fog[team.id].dynamicUpdated = true;
 
             if(state.rules.staticFog){
-                synchronized(staticEvents){
-                    int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
-                    int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
-                    pushEvent(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id), false);
-                }
+                int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
+                int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
+                pushEvent(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id), false);
             }
         }
     }
@@ -204,6 +219,12 @@ public final class FogControl implements CustomChunk{
             fog = new FogData[256];
         }
 
+        //fog may have been enabled after the world was loaded
+        if(!occlusion.valid()){
+            occlusion.rebuild();
+            invalidateDynamic();
+        }
+
         //force update static
         if(state.rules.staticFog && !loadedStatic){
             pushStaticBlocks(false);
@@ -211,23 +232,6 @@ public final class FogControl implements CustomChunk{
             loadedStatic = true;
         }
 
-        if(staticFogThread == null){
-            staticFogThread = new StaticFogThread();
-            staticFogThread.setPriority(Thread.NORM_PRIORITY - 1);
-            staticFogThread.setDaemon(true);
-            staticFogThread.start();
-        }
-
-        if(dynamicFogThread == null){
-            dynamicFogThread = new DynamicFogThread();
-            dynamicFogThread.setPriority(Thread.NORM_PRIORITY - 1);
-            dynamicFogThread.setDaemon(true);
-            dynamicFogThread.start();
-        }
-
-        //clear to prepare for queuing fog radius from units and buildings
-        dynamicEventQueue.clear();
-
         //update fog visibility manually
         if(state.rules.fog && !headless && Groups.build.size() > 0){
 
@@ -256,39 +260,39 @@ public final class FogControl implements CustomChunk{
         for(var team : state.teams.present){
             //AI teams do not have fog
             if(!team.team.isOnlyAI()){
-                //separate for each team
-                unitEventQueue.clear();
-
                 FogData data = fog[team.team.id];
 
                 if(data == null){
                     data = fog[team.team.id] = new FogData();
                 }
 
-                synchronized(staticEvents){
-                    //TODO slow?
-                    for(var unit : team.units){
-                        int tx = unit.tileX(), ty = unit.tileY(), pos = tx + ty * ww;
-                        if(unit.type.fogRadius <= 0f) continue;
-                        int radius = (int)unit.type.fogRadius;
-                        //Fog sight height scales with unit elevation, allowing higher units to see over lower walls.
-                        int baseHeight = HeightLayerData.edgeLayer(unit.x, unit.y, unit.hitSize / 2f);
-                        int maxExtra = HeightLayerData.maxLayer - HeightLayerData.minLayer;
-                        int extraHeight = Mathf.clamp(Mathf.round(unit.elevation * maxExtra), 0, maxExtra);
-                        int viewerHeight = Mathf.clamp(baseHeight + extraHeight, HeightLayerData.minLayer, HeightLayerData.maxLayer);
-                        boolean ignoreHeight = false;
-                        int encodedRadius = encodeFogRadius(radius, ignoreHeight, viewerHeight);
-                        long event = FogEvent.get(tx, ty, encodedRadius, team.team.id);
-                        int fogSignature = pos * 31 + encodedRadius;
-
-                        //always update the dynamic events, but only *flush* the results when necessary?
-                        unitEventQueue.add(event);
-
-                        if(unit.lastFogPos != fogSignature){
-                            pushEvent(event, false);
-                            unit.lastFogPos = fogSignature;
-                            data.dynamicUpdated = true;
-                        }
+                //separate for each team
+                LongSeq unitEvents = data.unitQueue;
+                unitEvents.clear();
+
+                //TODO slow?
+                for(var unit : team.units){
+                    int tx = unit.tileX(), ty = unit.tileY(), pos = tx + ty * ww;
+                    if(unit.type.fogRadius <= 0f) continue;
+                    int radius = (int)unit.type.fogRadius;
+                    //Fog sight height scales with unit elevation, allowing higher units to see over lower walls.
+                    int baseHeight = HeightLayerData.edgeLayer(unit.x, unit.y, unit.hitSize / 2f);
+                    int maxExtra = HeightLayerData.maxLayer - HeightLayerData.minLayer;
+                    int extraHeight = Mathf.clamp(Mathf.round(unit.elevation * maxExtra), 0, maxExtra);
+                    int viewerHeight = Mathf.clamp(baseHeight + extraHeight, HeightLayerData.minLayer, HeightLayerData.maxLayer);
+                    boolean ignoreHeight = false;
+                    int encodedRadius = encodeFogRadius(radius, ignoreHeight, viewerHeight);
+                    long event = FogEvent.get(tx, ty, encodedRadius, team.team.id);
+                    int fogSignature = pos * 31 + encodedRadius;
+
+                    //always update the dynamic events, but only *flush* the results when necessary?
+                    unitEvents.add(unit.id);
+                    unitEvents.add(event);
+
+                    if(unit.lastFogPos != fogSignature){
+                        pushEvent(event, false);
+                        unit.lastFogPos = fogSignature;
+                        data.dynamicUpdated = true;
                     }
                 }
 
@@ -297,171 +301,214 @@ public final class FogControl implements CustomChunk{
                     data.dynamicUpdated = false;
                     data.lastDynamicMs = Time.millis();
 
+                    LongSeq dynamicEvents = data.dynamicQueue;
+                    dynamicEvents.clear();
+
                     //add building updates
                     for(var build : indexer.getFlagged(team.team, BlockFlag.hasFogRadius)){
                         int viewerHeight = HeightLayerData.edgeLayer(build.x, build.y, build.hitSize() / 2f);
                         int encodedRadius = encodeFogRadius(Mathf.round(build.fogRadius()), false, viewerHeight);
-                        dynamicEventQueue.add(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id));
+                        dynamicEvents.add(build.id);
+                        dynamicEvents.add(FogEvent.get(build.tile.x, build.tile.y, encodedRadius, build.team.id));
                     }
 
                     //add unit updates
-                    dynamicEventQueue.addAll(unitEventQueue);
+                    dynamicEvents.addAll(unitEvents);
+
+                    //the newest viewer set replaces any set the worker has not picked up yet
+                    data.dynamicQueue = data.handOff(data.dynamicInbox, dynamicEvents, false);
                 }
-            }
-        }
 
-        if(dynamicEventQueue.size > 0){
-            //flush unit events over when something happens
-            synchronized(dynamicEvents){
-                dynamicEvents.clear();
-                dynamicEvents.addAll(dynamicEventQueue);
-            }
-            dynamicEventQueue.clear();
+                if(state.rules.staticFog && data.staticQueue.size > 0){
+                    //static events must never be dropped, so pending ones are merged
+                    data.staticQueue = data.handOff(data.staticInbox, data.staticQueue, true);
+                }
 
-            //force update so visibility doesn't have a pop-in
-            if(justLoaded){
-                updateDynamic(new Bits(256));
-                justLoaded = false;
+                //force update so visibility doesn't have a pop-in
+                if(justLoaded){
+                    runNow(data);
+                }else{
+                    schedule(data);
+                }
             }
+        }
 
-            //notify that it's time for rendering
-            //TODO this WILL block until it is done rendering, which is inherently problematic.
-            synchronized(notifyDynamic){
-                notifyDynamic.notify();
-            }
+        justLoaded = false;
+    }
+
+    /**
+     * Submits a job for this team to the {@link AsyncCore} background workers, unless one is already running; a running job picks up new events by itself.
+     * Teams are rasterized in parallel, with at most one job per team active at once.
+     */
+    void schedule(FogData data){
+        if(data.hasPending() && data.running.compareAndSet(false, true)){
+            AsyncCore.execute(() -> runJobs(data));
         }
+    }
 
-        //wake up, it's time to draw some circles
-        if(state.rules.staticFog && staticEvents.size > 0 && staticFogThread != null){
-            synchronized(notifyStatic){
-                notifyStatic.notify();
-            }
+    /** Processes pending events for this team on the calling thread, if no job is currently running for it. */
+    void runNow(FogData data){
+        if(data.running.compareAndSet(false, true)){
+            runJobs(data);
+        }else{
+            schedule(data);
         }
     }
 
-    class StaticFogThread extends Thread{
+    /** Must only be called by the owner of {@link FogData#running}. */
+    void runJobs(FogData data){
+        try{
+            do{
+                LongSeq events;
 
-        StaticFogThread(){
-            super("StaticFogThread");
-        }
+                if((events = data.staticInbox.getAndSet(null)) != null){
+                    updateStatic(data, events);
+                    data.recycle(events);
+                }
 
-        @Override
-        public void run(){
-            while(true){
-                try{
-                    synchronized(notifyStatic){
-                        try{
-                            //wait until an event happens
-                            notifyStatic.wait();
-                        }catch(InterruptedException e){
-                            //end thread
-                            return;
-                        }
-                    }
+                if((events = data.dynamicInbox.getAndSet(null)) != null){
+                    updateDynamic(data, events);
+                    data.recycle(events);
+                }
 
-                    updateStatic();
-                    //ignore, don't want to crash this thread
-                }catch(Exception e){}
-            }
+                data.running.set(false);
+                //new events may have arrived between the last check and releasing the flag
+            }while(data.hasPending() && data.running.compareAndSet(false, true));
+        }catch(Throwable e){
+            data.running.set(false);
+            Log.err(e);
         }
     }
 
+    /** Flushes all queued static events synchronously. */
     void updateStatic(){
+        if(fog == null) return;
 
-        //I really don't like synchronizing here, but there should be *some* performance benefit at least
-        synchronized(staticEvents){
-            int size = staticEvents.size;
-            for(int i = 0; i < size; i++){
-                long event = staticEvents.items[i];
-                int x = FogEvent.x(event), y = FogEvent.y(event), encodedRadius = FogEvent.radius(event), team = FogEvent.team(event);
-                boolean ignoreHeight = decodeFogIgnoreHeight(encodedRadius);
-                int rad = decodeFogRadius(encodedRadius);
-                var data = fog[team];
-                if(data != null){
-                    int viewerHeight = ignoreHeight ? HeightLayerData.maxLayer : decodeFogViewerHeight(encodedRadius);
-                    circle(data.staticData, x, y, rad, viewerHeight, ignoreHeight);
-                }
+        for(var data : fog){
+            if(data != null && data.staticQueue.size > 0){
+                data.staticQueue = data.handOff(data.staticInbox, data.staticQueue, true);
+                runNow(data);
             }
-            staticEvents.clear();
         }
     }
 
-    class DynamicFogThread extends Thread{
-        final Bits cleared = new Bits();
-
-        DynamicFogThread(){
-            super("DynamicFogThread");
+    void updateStatic(FogData data, LongSeq events){
+        int size = events.size;
+        for(int i = 0; i < size; i++){
+            long event = events.items[i];
+            int x = FogEvent.x(event), y = FogEvent.y(event), encodedRadius = FogEvent.radius(event);
+            boolean ignoreHeight = decodeFogIgnoreHeight(encodedRadius);
+            int rad = decodeFogRadius(encodedRadius);
+            int viewerHeight = ignoreHeight ? HeightLayerData.maxLayer : decodeFogViewerHeight(encodedRadius);
+            circle(data.staticData, x, y, rad, viewerHeight, ignoreHeight);
         }
+    }
 
-        @Override
-        public void run(){
+    /**
+     * Applies the latest set of viewers of a team, as pairs of (entity ID, fog event). The update is incremental:
+     * viewers whose event did not change are skipped, moved viewers swap their old footprint for a new one,
+     * and viewers that are no longer present have their footprint removed.
+     */
+    void updateDynamic(FogData data, LongSeq events){
+        int stamp = ++data.dynamicStamp;
+        data.changed.clear();
+
+        if(data.rebuildDynamic){
+            data.rebuildDynamic = false;
+            clearViewers(data);
+        }
+
+        //diff step
+        int size = events.size;
+        for(int i = 0; i + 1 < size; i += 2){
+            int id = (int)events.items[i];
+            long event = events.items[i + 1];
+
+            FogViewer viewer = data.viewers.get(id);
+            if(viewer == null){
+                data.viewers.put(id, viewer = new FogViewer());
+            }
 
-            while(true){
-                try{
-                    synchronized(notifyDynamic){
-                        try{
-                            //wait until an event happens
-                            notifyDynamic.wait();
-                        }catch(InterruptedException e){
-                            //end thread
-                            return;
-                        }
-                    }
+            viewer.stamp = stamp;
 
-                    updateDynamic(cleared);
+            if(viewer.event != event){
+                removeFootprint(data, viewer);
+                viewer.event = event;
+                addFootprint(data, viewer);
+            }
+        }
 
-                    //ignore, don't want to crash this thread
-                }catch(Exception e){
-                    //log for debugging
-                    e.printStackTrace();
-                }
+        //viewers that were not part of this update are gone
+        IntSeq stale = data.staleViewers;
+        stale.clear();
+        for(var entry : data.viewers){
+            if(entry.value.stamp != stamp){
+                removeFootprint(data, entry.value);
+                stale.add(entry.key);
             }
         }
-    }
+        for(int i = 0; i < stale.size; i++){
+            data.viewers.remove(stale.items[i]);
+        }
 
-    void updateDynamic(Bits cleared){
-        cleared.clear();
+        applyChanges(data, data.write);
 
-        //ugly sync
-        synchronized(dynamicEvents){
-            int size = dynamicEvents.size;
+        //swap buffers, flushing the data that was just drawn
+        Bits temp = data.read;
+        data.read = data.write;
+        data.write = temp;
 
-            //draw step
-            for(int i = 0; i < size; i++){
-                long event = dynamicEvents.items[i];
-                int x = FogEvent.x(event), y = FogEvent.y(event), encodedRadius = FogEvent.radius(event), team = FogEvent.team(event);
-                boolean ignoreHeight = decodeFogIgnoreHeight(encodedRadius);
-                int rad = decodeFogRadius(encodedRadius);
+        //bring the back buffer up to date, so that it can be modified incrementally next time
+        applyChanges(data, data.write);
+    }
 
-                if(rad <= 0) continue;
+    void clearViewers(FogData data){
+        for(var viewer : data.viewers.values()){
+            removeFootprint(data, viewer);
+        }
+        data.viewers.clear();
+    }
 
-                var data = fog[team];
-                if(data != null){
+    void addFootprint(FogData data, FogViewer viewer){
+        long event = viewer.event;
+        int encodedRadius = FogEvent.radius(event);
+        int rad = decodeFogRadius(encodedRadius);
+        if(rad <= 0) return;
 
-                    //clear the buffer, since it is being re-drawn
-                    if(!cleared.get(team)){
-                        cleared.set(team);
+        boolean ignoreHeight = decodeFogIgnoreHeight(encodedRadius);
+        int viewerHeight = ignoreHeight ? HeightLayerData.maxLayer : decodeFogViewerHeight(encodedRadius);
 
-                        data.write.clear();
-                    }
+        //radius is always +1 to keep up with visuals
+        FogVision.footprint(viewer.cells, occlusion, FogEvent.x(event), FogEvent.y(event), rad + 1, viewerHeight, ignoreHeight, ww, wh);
 
-                    //radius is always +1 to keep up with visuals
-                    int viewerHeight = ignoreHeight ? HeightLayerData.maxLayer : decodeFogViewerHeight(encodedRadius);
-                    circle(data.write, x, y, rad + 1, viewerHeight, ignoreHeight);
-                }
+        int[] counts = data.viewerCounts, cells = viewer.cells.items;
+        for(int i = 0; i < viewer.cells.size; i++){
+            int cell = cells[i];
+            if(counts[cell]++ == 0){
+                data.changed.add(cell);
             }
-            dynamicEvents.clear();
         }
+    }
 
-        //swap step, no need for synchronization or anything
-        for(int i = 0; i < 256; i++){
-            if(cleared.get(i)){
-                var data = fog[i];
+    void removeFootprint(FogData data, FogViewer viewer){
+        int[] counts = data.viewerCounts, cells = viewer.cells.items;
+        for(int i = 0; i < viewer.cells.size; i++){
+            int cell = cells[i];
+            if(--counts[cell] == 0){
+                data.changed.add(cell);
+            }
+        }
+        viewer.cells.clear();
+    }
 
-                //swap buffers, flushing the data that was just drawn
-                Bits temp = data.read;
-                data.read = data.write;
-                data.write = temp;
+    void applyChanges(FogData data, Bits target){
+        int[] counts = data.viewerCounts, changed = data.changed.items;
+        for(int i = 0; i < data.changed.size; i++){
+            int cell = changed[i];
+            if(counts[cell] > 0){
+                target.set(cell);
+            }else{
+                target.clear(cell);
             }
         }
     }
@@ -628,61 +675,8 @@ public final class FogControl implements CustomChunk{
         return true;
     }
 
-    static void circle(Bits arr, int x, int y, int radius, int viewerHeight, boolean ignoreHeight){
-        if(radius <= 0) return;
-        int f = 1 - radius;
-        int ddFx = 1, ddFy = -2 * radius;
-        int px = 0, py = radius;
-
-        hline(arr, x, y, x, x, y + radius, viewerHeight, ignoreHeight);
-        hline(arr, x, y, x, x, y - radius, viewerHeight, ignoreHeight);
-        hline(arr, x, y, x - radius, x + radius, y, viewerHeight, ignoreHeight);
-
-        while(px < py){
-            if(f >= 0){
-                py--;
-                ddFy += 2;
-                f += ddFy;
-            }
-            px++;
-            ddFx += 2;
-            f += ddFx;
-            hline(arr, x, y, x - px, x + px, y + py, viewerHeight, ignoreHeight);
-            hline(arr, x, y, x - px, x + px, y - py, viewerHeight, ignoreHeight);
-            hline(arr, x, y, x - py, x + py, y + px, viewerHeight, ignoreHeight);
-            hline(arr, x, y, x - py, x + py, y - px, viewerHeight, ignoreHeight);
-        }
-    }
-
-    static void hline(Bits arr, int sourceX, int sourceY, int x1, int x2, int y, int viewerHeight, boolean ignoreHeight){
-        if(y < 0 || y >= wh) return;
-        int tmp;
-
-        if(x1 > x2){
-            tmp = x1;
-            x1 = x2;
-            x2 = tmp;
-        }
-
-        if(x1 >= ww) return;
-        if(x2 < 0) return;
-
-        if(x1 < 0) x1 = 0;
-        if(x2 >= ww) x2 = ww - 1;
-        int off = y * ww;
-
-        if(ignoreHeight){
-            arr.set(off + x1, off + x2 + 1);
-            return;
-        }
-
-        for(int x = x1; x <= x2; x++){
-            if(!hasVisionPath(sourceX, sourceY, x, y, viewerHeight)) continue;
-            Tile tile = world.tile(x, y);
-            if(HeightLayerData.fogLayer(tile) <= viewerHeight){
-                arr.set(off + x);
-            }
-        }
+    void circle(Bits arr, int x, int y, int radius, int viewerHeight, boolean ignoreHeight){
+        FogVision.circle(arr, occlusion, x, y, radius, viewerHeight, ignoreHeight, ww, wh);
     }
 
     static class FogData{
@@ -695,6 +689,29 @@ public final class FogControl implements CustomChunk{
         long lastDynamicMs = 0;
         /** if true, a dynamic fog update must be scheduled. */
         boolean dynamicUpdated = true;
+        /** if true, all dynamic footprints are discarded and re-traced on the next dynamic update. */
+        volatile boolean rebuildDynamic;
+
+        /** events being queued on the main thread. */
+        LongSeq staticQueue = new LongSeq(), dynamicQueue = new LongSeq();
+        final LongSeq unitQueue = new LongSeq();
+        /** events handed off to the worker; swapped in by the main thread, taken by the worker. */
+        final AtomicReference<LongSeq> staticInbox = new AtomicReference<>(), dynamicInbox = new AtomicReference<>();
+        /** a consumed event list, returned by the worker for reuse. */
+        final AtomicReference<LongSeq> spare = new AtomicReference<>();
+        /** whether a job currently owns this team's fog data. */
+        final AtomicBoolean running = new AtomicBoolean();
+
+        /** amount of dynamic viewers covering each cell. Only accessed by the job owning this data. */
+        final int[] viewerCounts;
+        /** dynamic viewers, by entity ID. Only accessed by the job owning this data. */
+        final IntMap<FogViewer> viewers = new IntMap<>();
+        /** cells whose viewer count changed to or from zero during the current dynamic update. */
+        final IntSeq changed = new IntSeq();
+        /** scratch list of viewers to remove. */
+        final IntSeq staleViewers = new IntSeq();
+        /** incremented every dynamic update; viewers not stamped with the current value are removed. */
+        int dynamicStamp;
 
         FogData(){
             int len = ww * wh;
@@ -702,7 +719,50 @@ public final class FogControl implements CustomChunk{
             read = new Bits(len);
             write = new Bits(len);
             staticData = new Bits(len);
+            viewerCounts = new int[len];
+        }
+
+        boolean hasPending(){
+            return staticInbox.get() != null || dynamicInbox.get() != null;
+        }
+
+        /**
+         * Publishes a queue to the worker. Main thread only.
+         * @param merge if true, the queue is appended to a pending list that was not picked up yet; otherwise, the pending list is dropped.
+         * @return an empty list to continue queuing in.
+         */
+        LongSeq handOff(AtomicReference<LongSeq> inbox, LongSeq queue, boolean merge){
+            //the worker only ever takes lists out of the inbox, so anything taken here is owned by the main thread
+            LongSeq pending = inbox.getAndSet(null);
+
+            if(pending != null && merge){
+                pending.addAll(queue);
+                inbox.set(pending);
+                queue.clear();
+                return queue;
+            }
+
+            inbox.set(queue);
+
+            LongSeq next = pending != null ? pending : spare.getAndSet(null);
+            if(next == null) next = new LongSeq();
+            next.clear();
+            return next;
         }
+
+        void recycle(LongSeq events){
+            events.clear();
+            spare.set(events);
+        }
+    }
+
+    static class FogViewer{
+        /** last event applied for this viewer. */
+        long event = -1;
+        /** dynamic update this viewer was last seen in. */
+        int stamp;
+        /** cells currently revealed by this viewer. */
+        final IntSeq cells = new IntSeq();
     }
 
     @Struct
@@ -0,0 +1,110 @@
+package mindustry.game;
+
+import mindustry.world.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Flat per-tile occlusion grids used by fog vision, one for each viewer height.
+ * Each cell holds {@link #cellBlocks} and {@link #cellVisible} flags, so ray tracing never has to look at {@link Tile} objects.
+ * Written on the main thread; fog workers may read stale values for a tile that is being changed, which is corrected by the next fog rebuild.
+ */
+public class FogOcclusion{
+    /** cell flag: blocks rays that pass through this cell. */
+    public static final byte cellBlocks = 1;
+    /** cell flag: this cell can be revealed when a ray reaches it. */
+    public static final byte cellVisible = 2;
+
+    private static final int layers = HeightLayerData.maxLayer - HeightLayerData.minLayer + 1;
+
+    private volatile Grids grids = new Grids(0, 0);
+
+    /** Recomputes all grids from the current world. */
+    public void rebuild(){
+        Grids next = new Grids(world.width(), world.height());
+
+        for(int i = 0; i < next.width * next.height; i++){
+            Tile tile = world.tiles.geti(i);
+            for(int l = 0; l < layers; l++){
+                next.layers[l][i] = flags(tile, l + HeightLayerData.minLayer);
+            }
+        }
+
+        grids = next;
+    }
+
+    /** @return whether the grids match the dimensions of the current world. */
+    public boolean valid(){
+        Grids grids = this.grids;
+        return grids.width == world.width() && grids.height == world.height();
+    }
+
+    /**
+     * Recomputes the flags of a single tile.
+     * @return whether the flags for any viewer height changed.
+     */
+    public boolean update(Tile tile){
+        if(tile == null || !valid()) return false;
+
+        byte[][] grids = this.grids.layers;
+        int index = tile.array();
+        boolean changed = false;
+
+        for(int l = 0; l < layers; l++){
+            byte flags = flags(tile, l + HeightLayerData.minLayer);
+            if(grids[l][index] != flags){
+                grids[l][index] = flags;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /** Copies the flags of a horizontal run of tiles into the output. Tiles outside the grid are treated like missing tiles. */
+    public void copyRow(byte[] out, int offset, int x, int y, int length, int viewerHeight){
+        Grids grids = this.grids;
+        byte[] grid = grids.layers[viewerHeight - HeightLayerData.minLayer];
+        int w = grids.width, h = grids.height;
+        byte outside = flags(null, viewerHeight);
+
+        if(y < 0 || y >= h){
+            for(int i = 0; i < length; i++){
+                out[offset + i] = outside;
+            }
+            return;
+        }
+
+        int from = Math.max(x, 0), to = Math.min(x + length, w);
+        for(int i = x; i < from && i < x + length; i++){
+            out[offset + i - x] = outside;
+        }
+        if(from < to){
+            System.arraycopy(grid, from + y * w, out, offset + from - x, to - from);
+        }
+        for(int i = Math.max(to, from); i < x + length; i++){
+            out[offset + i - x] = outside;
+        }
+    }
+
+    /** @return the occlusion flags of a tile for a viewer at the specified height. */
+    public static byte flags(Tile tile, int viewerHeight){
+        int tileHeight = HeightLayerData.fogLayer(tile);
+        byte flags = 0;
+        if(tileHeight > viewerHeight || (tileHeight >= viewerHeight && FogControl.blocksVision(tile))) flags |= cellBlocks;
+        if(tileHeight <= viewerHeight) flags |= cellVisible;
+        return flags;
+    }
+
+    static class Grids{
+        final int width, height;
+        /** indexed by viewer height - minLayer, then by tile position. */
+        final byte[][] layers;
+
+        Grids(int width, int height){
+            this.width = width;
+            this.height = height;
+            this.layers = new byte[FogOcclusion.layers][width * height];
+        }
+    }
+}
@@ -9,6 +9,7 @@ import arc.util.*;
 import mindustry.*;
 import mindustry.ai.*;
 import mindustry.annotations.Annotations.*;
+import mindustry.entities.*;
 import mindustry.gen.*;
 import mindustry.content.*;
 import mindustry.type.*;
@@ -197,10 +198,6 @@ public class Teams{
             if(data.cores.size > 0){
                 data.lastCore = data.cores.first();
             }
-            if(data.unitTree != null){
-                data.unitTree.clear();
-            }
-
             if(data.typeCounts != null){
                 Arrays.fill(data.typeCounts, 0);
             }
@@ -215,11 +212,11 @@ public class Teams{
             }
         }
 
-        //TODO this is slow and dumb
         for(Unit unit : Groups.unit){
             if(unit.type == null) continue;
             TeamData data = unit.team.data();
-            data.tree().insert(unit);
+            //the unit grid persists between frames; units are only moved when they change cells
+            data.tree().update(unit);
             data.units.add(unit);
             data.presentFlag = true;
 
@@ -248,6 +245,11 @@ public class Teams{
         for(Team team : Team.all){
             TeamData data = team.data();
 
+            //drop units that died or switched teams since the last update
+            if(data.unitTree != null){
+                data.unitTree.removeStale();
+            }
+
             if(data.presentFlag || data.active()){
                 present.add(data);
             }
@@ -297,8 +299,8 @@ public class Teams{
         public @Nullable QuadTree<Building> buildingTree;
         /** Turrets by range. Null if not active. */
         public @Nullable QuadTree<Building> turretTree;
-        /** Quadtree for units of this team. Do not access directly. */
-        public @Nullable QuadTree<Unit> unitTree;
+        /** Spatial index for units of this team. Do not access directly. */
+        public @Nullable UnitGrid unitTree;
         /** Current unit cap. Do not modify externally. */
         public int unitCap;
         /** Total unit count. */
@@ -424,8 +426,8 @@ public class Teams{
             typeCounts[type.id] = Math.max(amount + typeCounts[type.id], 0);
         }
 
-        public QuadTree<Unit> tree(){
-            if(unitTree == null) unitTree = new QuadTree<>(Vars.world.getQuadBounds(new Rect()));
+        public UnitGrid tree(){
+            if(unitTree == null) unitTree = new UnitGrid(team, Vars.world.getQuadBounds(new Rect()));
             return unitTree;
         }
 
@@ -1425,6 +1425,10 @@ public abstract class InputHandler implements InputProcessor, GestureListener{
 
             player.unit(unit);
 
+            if(unit instanceof BlockUnitc block){
+                block.tile().wake(WakeFlag.control);
+            }
+
             if(before != null){
                 if(before.spawnedByCore){
                     unit.dockedType = before.type;
@@ -46,8 +46,13 @@ public class JsonIO{
     };
 
     public static void writeBytes(Object value, Class<?> elementType, DataOutputStream output){
+        writeBytes(value, value == null ? null : value.getClass(), elementType, output);
+    }
+
+    /** Writes an object as binary JSON. Values of a subclass of the known type are tagged with their class. */
+    public static void writeBytes(Object value, Class<?> knownType, Class<?> elementType, DataOutputStream output){
         json.setWriter(new UBJsonWriter(output));
-        json.writeValue(value, value == null ? null : value.getClass(), elementType);
+        json.writeValue(value, knownType, elementType);
     }
 
     public static <T> T readBytes(Class<T> type, Class<?> elementType, DataInputStream input) throws IOException{
@@ -41,7 +41,7 @@ public class MapIO{
             SaveVersion ver = SaveIO.getSaveWriter(version);
             if(ver == null) throw new IOException("Unknown save version: " + version + ". Are you trying to load a save from a newer version?");
             StringMap tags = new StringMap();
-            ver.readRegion("meta", stream, counter, in -> tags.putAll(ver.readStringMap(in)));
+            ver.readRegion("meta", stream, counter, in -> tags.putAll(ver.readMetaTags(in)));
             return new Map(file, tags.getInt("width"), tags.getInt("height"), tags, custom, version, Version.build);
         }
     }
@@ -71,7 +71,7 @@ public class MapIO{
             int version = stream.readInt();
             SaveVersion ver = SaveIO.getSaveWriter(version);
             if(ver == null) throw new IOException("Unknown save version: " + version + ". Are you trying to load a save from a newer version?");
-            ver.readRegion("meta", stream, counter, ver::readStringMap);
+            ver.readRegion("meta", stream, counter, ver::readMetaTags);
 
             Pixmap floors = new Pixmap(map.width, map.height);
             Pixmap walls = new Pixmap(map.width, map.height);
@@ -20,7 +20,9 @@ public class SaveIO{
     /** Save format header. */
     public static final byte[] header = {'M', 'S', 'A', 'V'};
     public static final IntMap<SaveVersion> versions = new IntMap<>();
-    public static final Seq<SaveVersion> versionArray = Seq.with(new Save1(), new Save2(), new Save3(), new Save4(), new Save5(), new Save6(), new Save7(), new Save8(), new Save9(), new Save10(), new Save11());
+    public static final Seq<SaveVersion> versionArray = Seq.with(new Save1(), new Save2(), new Save3(), new Save4(), new Save5(), new Save6(), new Save7(), new Save8(), new Save9(), new Save10(), new Save11(), new Save12());
+    /** Initial capacity of snapshot buffers. They grow as needed. */
+    private static final int snapshotBufferSize = 1024 * 256;
 
     static{
         for(SaveVersion version : versionArray){
@@ -47,6 +49,28 @@ public class SaveIO{
         }
     }
 
+    /**
+     * Serializes the current game state into an uncompressed in-memory buffer. Must be called on the main thread.
+     * The returned buffer is not shared, and can be written to disk with {@link #save(Fi, byte[], int)} from any thread.
+     */
+    public static ReusableByteOutStream snapshot(){
+        ReusableByteOutStream out = new ReusableByteOutStream(snapshotBufferSize);
+        write(out, null);
+        return out;
+    }
+
+    /** Compresses and writes a buffer produced by {@link #snapshot()}, keeping a backup of the previous file like {@link #save(Fi)}. Thread-safe. */
+    public static void save(Fi file, byte[] bytes, int length){
+        boolean exists = file.exists();
+        if(exists) file.moveTo(backupFileFor(file));
+        try(OutputStream os = new FastDeflaterOutputStream(file.write(false, bufferSize))){
+            os.write(bytes, 0, length);
+        }catch(Throwable e){
+            if(exists) backupFileFor(file).moveTo(file);
+            throw new RuntimeException(e);
+        }
+    }
+
     public static DataInputStream getStream(Fi file){
         return new DataInputStream(new InflaterInputStream(file.read(bufferSize)));
     }
@@ -52,11 +52,25 @@ public abstract class SaveVersion extends SaveFileReader{
             map.getInt("build"),
             map.get("mapname"),
             map.getInt("wave"),
-            JsonIO.read(Rules.class, map.get("rules", "{}")),
+            version >= 12 ? JsonIO.readBytes(Rules.class, null, readMetaState(stream)) : JsonIO.read(Rules.class, map.get("rules", "{}")),
             map
         );
     }
 
+    /** Reads the tags of the meta region only, skipping the binary state that follows them. */
+    public StringMap readMetaTags(DataInput stream) throws IOException{
+        StringMap map = readStringMap(stream);
+        if(version >= 12) skipChunk(stream);
+        return map;
+    }
+
+    /** @return a stream of the binary rules, stats and locales following the meta tags, in that order. */
+    DataInputStream readMetaState(DataInput stream) throws IOException{
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
     @Override
     public final void write(DataOutputStream stream) throws IOException{
         write(stream, new StringMap());
@@ -135,7 +149,7 @@ public abstract class SaveVersion extends SaveFileReader{
             "wave", state.wave,
             "tick", state.tick,
             "wavetime", state.wavetime,
-            "stats", JsonIO.write(state.stats),
+            //rules and locales are kept as text, as map files are read through their tags
             "rules", JsonIO.write(state.rules),
             "sectorPreset", state.rules.sector != null && state.rules.sector.preset != null ? state.rules.sector.preset.name : "", //empty string is a placeholder for null (null is possible but may be finicky)
             "locales", JsonIO.write(state.mapLocales),
@@ -148,6 +162,14 @@ public abstract class SaveVersion extends SaveFileReader{
             "nocores", state.rules.defaultTeam.cores().isEmpty(),
             "playerteam", player == null ? state.rules.defaultTeam.id : player.team().id
         )));
+
+        //loading reads binary JSON instead, which is much faster to parse
+        writeChunk(stream, writes -> {
+            DataOutputStream out = (DataOutputStream)writes.output;
+            JsonIO.writeBytes(state.rules, null, out);
+            JsonIO.writeBytes(state.stats, null, out);
+            JsonIO.writeBytes(state.mapLocales, null, out);
+        });
     }
 
     public void readMeta(DataInput stream, WorldContext context) throws IOException{
@@ -156,9 +178,16 @@ public abstract class SaveVersion extends SaveFileReader{
         state.wave = map.getInt("wave");
         state.wavetime = map.getFloat("wavetime", state.rules.waveSpacing);
         state.tick = map.getFloat("tick");
-        state.stats = JsonIO.read(GameStats.class, map.get("stats", "{}"));
-        state.rules = JsonIO.read(Rules.class, map.get("rules", "{}"));
-        state.mapLocales = JsonIO.read(MapLocales.class, map.get("locales", "{}"));
+        if(version >= 12){
+            DataInputStream data = readMetaState(stream);
+            state.rules = JsonIO.readBytes(Rules.class, null, data);
+            state.stats = JsonIO.readBytes(GameStats.class, null, data);
+            state.mapLocales = JsonIO.readBytes(MapLocales.class, null, data);
+        }else{
+            state.stats = JsonIO.read(GameStats.class, map.get("stats", "{}"));
+            state.rules = JsonIO.read(Rules.class, map.get("rules", "{}"));
+            state.mapLocales = JsonIO.read(MapLocales.class, map.get("locales", "{}"));
+        }
         if(state.rules.spawns.isEmpty()) state.rules.spawns = waves.get();
 
         if(context.getSector() != null){
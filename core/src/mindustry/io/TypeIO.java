@@ -36,6 +36,8 @@ import static mindustry.Vars.*;
 @SuppressWarnings("unused")
 @TypeIOHandler
 public class TypeIO{
+    private static final ReusableByteOutStream jsonBytes = new ReusableByteOutStream();
+    private static final DataOutputStream jsonStream = new DataOutputStream(jsonBytes);
 
     public static void writeObject(Writes write, Object object){
         if(object == null){
@@ -696,42 +698,45 @@ public class TypeIO{
     }
 
     public static void writeRules(Writes write, Rules rules){
-        String string = JsonIO.write(rules);
-        byte[] bytes = string.getBytes(charset);
-        write.i(bytes.length);
-        write.b(bytes);
+        writeJsonBytes(write, rules, Rules.class);
     }
 
     public static Rules readRules(Reads read){
-        int length = read.i();
-        String string = new String(read.b(new byte[length]), charset);
-        return JsonIO.read(Rules.class, string);
+        return readJsonBytes(read, Rules.class);
     }
 
     public static void writeObjectives(Writes write, MapObjectives executor){
-        String string = JsonIO.write(executor);
-        byte[] bytes = string.getBytes(charset);
-        write.i(bytes.length);
-        write.b(bytes);
+        writeJsonBytes(write, executor, MapObjectives.class);
     }
 
     public static MapObjectives readObjectives(Reads read){
-        int length = read.i();
-        String string = new String(read.b(new byte[length]), charset);
-        return JsonIO.read(MapObjectives.class, string);
+        return readJsonBytes(read, MapObjectives.class);
     }
 
     public static void writeObjectiveMarker(Writes write, ObjectiveMarker marker){
-        String string = JsonIO.json.toJson(marker, MapObjectives.ObjectiveMarker.class);
-        byte[] bytes = string.getBytes(charset);
-        write.i(bytes.length);
-        write.b(bytes);
+        writeJsonBytes(write, marker, ObjectiveMarker.class);
     }
 
     public static ObjectiveMarker readObjectiveMarker(Reads read){
+        return readJsonBytes(read, ObjectiveMarker.class);
+    }
+
+    /** Writes an object as length-prefixed binary JSON. This skips building, encoding and parsing text, but keeps the flexibility of JSON. */
+    static void writeJsonBytes(Writes write, Object value, Class<?> knownType){
+        jsonBytes.reset();
+        JsonIO.writeBytes(value, knownType, null, jsonStream);
+        write.i(jsonBytes.size());
+        write.b(jsonBytes.getBytes(), 0, jsonBytes.size());
+    }
+
+    static <T> T readJsonBytes(Reads read, Class<T> type){
         int length = read.i();
-        String string = new String(read.b(new byte[length]), charset);
-        return JsonIO.read(MapObjectives.ObjectiveMarker.class, string);
+        byte[] bytes = read.b(new byte[length]);
+        try{
+            return JsonIO.readBytes(type, null, new DataInputStream(new ByteArrayInputStream(bytes)));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
     }
 
     public static void writeVecNullable(Writes write, @Nullable Vec2 v){
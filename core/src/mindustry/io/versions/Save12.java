@@ -0,0 +1,11 @@
+package mindustry.io.versions;
+
+import mindustry.io.*;
+
+/** Adds binary rules, stats and locales after the meta tags. */
+public class Save12 extends SaveVersion{
+
+    public Save12(){
+        super(12);
+    }
+}
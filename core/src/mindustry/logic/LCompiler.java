@@ -0,0 +1,210 @@
+package mindustry.logic;
+
+import arc.struct.*;
+import mindustry.logic.LExecutor.*;
+
+/**
+ * Compiles assembled instructions into the faster form run by {@link LExecutor#run(int)}.
+ * The result has exactly one instruction per source instruction, so {@code @counter} values and jump addresses keep their meaning.
+ * <ul>
+ *     <li>Arithmetic and comparisons on numbers are specialized, instead of dispatching through {@link LogicOp} and {@link ConditionOp} lambdas.</li>
+ *     <li>Runs of instructions that can neither yield nor write {@code @counter} are fused into a single {@link FusedI}, optionally ending with a jump.
+ *     Fused instructions are only placed where execution commonly enters a run: the start, jump targets and after jumps or other instructions.</li>
+ * </ul>
+ * Everything else is left as is and runs exactly like in the interpreter.
+ */
+public class LCompiler{
+    /** If false, processors run the instructions as assembled. */
+    public static boolean enabled = true;
+    /** Maximum amount of instructions fused together. */
+    public static int maxFused = 32;
+
+    public static LInstruction[] compile(LInstruction[] instructions, LVar counter){
+        if(!enabled) return instructions;
+
+        int length = instructions.length;
+        LInstruction[] result = new LInstruction[length];
+
+        for(int i = 0; i < length; i++){
+            result[i] = specialize(instructions[i]);
+        }
+
+        //instructions where execution commonly continues from somewhere other than the previous instruction
+        boolean[] entries = new boolean[length];
+        if(length > 0) entries[0] = true;
+        for(int i = 0; i < length; i++){
+            if(instructions[i] instanceof JumpI jump && jump.address >= 0 && jump.address < length){
+                entries[jump.address] = true;
+            }
+            if(i + 1 < length && !fusable(instructions[i], counter)){
+                entries[i + 1] = true;
+            }
+        }
+
+        Seq<LInstruction> body = new Seq<>(LInstruction.class);
+        LInstruction[] fused = new LInstruction[length];
+        for(int i = 0; i < length; i++){
+            fused[i] = result[i];
+            if(!entries[i]) continue;
+
+            body.clear();
+            for(int j = i; j < length && body.size < maxFused; j++){
+                if(instructions[j] instanceof JumpI){
+                    body.add(result[j]);
+                    break;
+                }
+                if(!fusable(instructions[j], counter)) break;
+                body.add(result[j]);
+            }
+
+            if(body.size > 1){
+                fused[i] = new FusedI(body.toArray());
+            }
+        }
+        return fused;
+    }
+
+    /** @return whether an instruction can run as part of a fused instruction without a jump. */
+    static boolean fusable(LInstruction inst, LVar counter){
+        //instructions that yield or modify the counter have to run through the executor loop
+        return
+            (inst instanceof SetI set && set.to != counter) ||
+            (inst instanceof OpI op && op.dest != counter) ||
+            (inst instanceof SelectI select && select.result != counter) ||
+            inst instanceof NoopI;
+    }
+
+    static LInstruction specialize(LInstruction inst){
+        if(inst instanceof OpI op && NumOpI.supports(op.op)){
+            return new NumOpI(op.op, op.a, op.b, op.dest);
+        }
+        if(inst instanceof JumpI jump && jump.op != ConditionOp.strictEqual){
+            return new NumJumpI(jump.op, jump.value, jump.compare, jump.address);
+        }
+        return inst;
+    }
+
+    /** Several consecutive instructions that never yield. Only the last one may jump. */
+    public static class FusedI implements LInstruction{
+        public final LInstruction[] body;
+
+        public FusedI(LInstruction[] body){
+            this.body = body;
+        }
+
+        /** Runs the first instruction only, like the interpreter would. */
+        @Override
+        public void run(LExecutor exec){
+            body[0].run(exec);
+        }
+
+        /**
+         * Runs up to {@code budget} instructions of the body. The counter must point at this instruction, and is advanced as the interpreter would.
+         * @return the amount of instructions run.
+         */
+        public int run(LExecutor exec, int budget){
+            LVar counter = exec.counter;
+            int count = Math.min(body.length, budget);
+            for(int i = 0; i < count; i++){
+                counter.numval++;
+                body[i].run(exec);
+            }
+            return count;
+        }
+    }
+
+    /** {@link OpI} with the numeric operation inlined. Falls back to the object function when both operands are objects. */
+    public static class NumOpI implements LInstruction{
+        public final LogicOp op;
+        public final LVar a, b, dest;
+
+        public NumOpI(LogicOp op, LVar a, LVar b, LVar dest){
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.dest = dest;
+        }
+
+        static boolean supports(LogicOp op){
+            return switch(op){
+                case add, sub, mul, div, idiv, mod, emod, equal, notEqual, land, lessThan, lessThanEq, greaterThan, greaterThanEq,
+                    shl, shr, ushr, or, and, xor, max, min -> true;
+                default -> false;
+            };
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            if(op.objFunction2 != null && a.isobj && b.isobj){
+                dest.setnum(op.objFunction2.get(a.obj(), b.obj()));
+                return;
+            }
+
+            double x = a.num(), y = b.num();
+            dest.setnum(switch(op){
+                case add -> x + y;
+                case sub -> x - y;
+                case mul -> x * y;
+                case div -> x / y;
+                case idiv -> Math.floor(x / y);
+                case mod -> x % y;
+                case emod -> ((x % y) + y) % y;
+                case equal -> Math.abs(x - y) < 0.000001 ? 1 : 0;
+                case notEqual -> Math.abs(x - y) < 0.000001 ? 0 : 1;
+                case land -> x != 0 && y != 0 ? 1 : 0;
+                case lessThan -> x < y ? 1 : 0;
+                case lessThanEq -> x <= y ? 1 : 0;
+                case greaterThan -> x > y ? 1 : 0;
+                case greaterThanEq -> x >= y ? 1 : 0;
+                case shl -> (long)x << (long)y;
+                case shr -> (long)x >> (long)y;
+                case ushr -> (long)x >>> (long)y;
+                case or -> (long)x | (long)y;
+                case and -> (long)x & (long)y;
+                case xor -> (long)x ^ (long)y;
+                case max -> Math.max(x, y);
+                case min -> Math.min(x, y);
+                default -> op.function2.get(x, y);
+            });
+        }
+    }
+
+    /** {@link JumpI} with the comparison inlined. Falls back to the object function when both operands are objects. */
+    public static class NumJumpI implements LInstruction{
+        public final ConditionOp op;
+        public final LVar value, compare;
+        public final int address;
+
+        public NumJumpI(ConditionOp op, LVar value, LVar compare, int address){
+            this.op = op;
+            this.value = value;
+            this.compare = compare;
+            this.address = address;
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            if(address != -1 && test()){
+                exec.counter.numval = address;
+            }
+        }
+
+        boolean test(){
+            if(op == ConditionOp.always) return true;
+            if(op.objFunction != null && value.isobj && compare.isobj){
+                return op.objFunction.get(value.obj(), compare.obj());
+            }
+
+            double x = value.num(), y = compare.num();
+            return switch(op){
+                case equal -> Math.abs(x - y) < 0.000001;
+                case notEqual -> Math.abs(x - y) >= 0.000001;
+                case lessThan -> x < y;
+                case lessThanEq -> x <= y;
+                case greaterThan -> x > y;
+                case greaterThanEq -> x >= y;
+                default -> op.function.get(x, y);
+            };
+        }
+    }
+}
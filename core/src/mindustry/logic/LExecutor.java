@@ -19,6 +19,7 @@ import mindustry.game.*;
 import mindustry.game.MapObjectives.*;
 import mindustry.game.Teams.*;
 import mindustry.gen.*;
+import mindustry.logic.LCompiler.*;
 import mindustry.logic.LogicFx.*;
 import mindustry.type.*;
 import mindustry.ui.*;
@@ -42,6 +43,8 @@ public class LExecutor{
     maxTextBuffer = 400;
 
     public LInstruction[] instructions = {};
+    /** Instructions as run by {@link #run(int)}; see {@link LCompiler}. Always has the same length as {@link #instructions}. */
+    public LInstruction[] compiled = {};
     /** Non-constant variables used for network sync */
     public LVar[] vars = {};
 
@@ -92,6 +95,39 @@ public class LExecutor{
         }
     }
 
+    /**
+     * Runs up to the specified amount of instructions, with the same results as calling {@link #runOnce()} that many times.
+     * Stops early after an instruction yields; {@link #yield} is left set in that case.
+     * @return the amount of instructions run, not counting the one that yielded.
+     */
+    public int run(int budget){
+        LInstruction[] code = compiled;
+        LVar counter = this.counter;
+        int length = code.length;
+        if(length == 0) return budget;
+
+        int ran = 0;
+        while(ran < budget){
+            //reset to start
+            if(counter.numval >= length || counter.numval < 0){
+                counter.numval = 0;
+            }
+            counter.isobj = false;
+
+            LInstruction inst = code[(int)counter.numval];
+            if(inst instanceof FusedI fused){
+                //fused instructions never yield
+                ran += fused.run(this, budget - ran);
+            }else{
+                counter.numval++;
+                inst.run(this);
+                if(yield) break;
+                ran++;
+            }
+        }
+        return ran;
+    }
+
     /** Loads with a specified assembler. Resets all variables. */
     public void load(LAssembler builder){
         nameMap = null;
@@ -105,6 +141,7 @@ public class LExecutor{
         unit = builder.getVar("@unit");
         thisv = builder.getVar("@this");
         ipt = builder.putConst("@ipt", build != null ? build.ipt : 0);
+        compiled = LCompiler.compile(instructions, counter);
     }
 
     //region utility
@@ -546,6 +583,8 @@ public class LExecutor{
                     }
                 }
 
+                b.wake(WakeFlag.control);
+
                 if(type.isObj && p1.isobj){
                     b.control(type, p1.obj(), p2.num(), p3.num(), p4.num());
                 }else{
@@ -25,6 +25,11 @@ public class BlendFilter extends GenerateFilter{
         return true;
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockSandFloor;
@@ -20,6 +20,11 @@ public class ClearFilter extends GenerateFilter{
         };
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockSnow;
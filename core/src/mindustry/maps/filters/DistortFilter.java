@@ -20,6 +20,11 @@ public class DistortFilter extends GenerateFilter{
         return true;
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockTendrils;
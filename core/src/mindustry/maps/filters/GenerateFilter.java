@@ -3,10 +3,12 @@ package mindustry.maps.filters;
 import arc.*;
 import arc.math.*;
 import arc.scene.ui.*;
+import arc.struct.*;
 import arc.util.*;
 import arc.util.noise.*;
 import mindustry.*;
 import mindustry.annotations.Annotations.*;
+import mindustry.async.*;
 import mindustry.content.*;
 import mindustry.gen.*;
 import mindustry.world.*;
@@ -15,13 +17,51 @@ import mindustry.world.blocks.environment.*;
 public abstract class GenerateFilter implements Cloneable{
     public int seed = 0;
 
+    /** If false, filters are never applied in parallel. */
+    public static boolean parallel = true;
+    /** Amount of rows each task processes when a filter is applied in parallel. */
+    public static int stripeRows = 32;
+
+    /** Packed tiles and their data, written by a filter before being copied back into the tiles. Reused between filters; only accessed by the thread loading the world. */
+    private static long[] packedTiles = {}, packedData = {};
+
     public void apply(Tiles tiles, GenerateInput in){
+        int size = tiles.width * tiles.height;
+        boolean buffered = isBuffered();
+
+        if(parallel && isParallel()){
+            ensureBuffers(size);
+            long[] outTiles = packedTiles, outData = packedData;
+            Seq<Runnable> tasks = new Seq<>();
+
+            //split into row stripes, each with its own input; tiles are only read until all stripes are done
+            for(int from = 0; from < tiles.height; from += stripeRows){
+                int start = from * tiles.width, end = Math.min(from + stripeRows, tiles.height) * tiles.width;
+                tasks.add(() -> {
+                    GenerateInput local = in.copy();
+                    for(int i = start; i < end; i++){
+                        local.set(tiles.geti(i));
+                        apply(local);
+
+                        outTiles[i] = PackTile.get(local.block.id, local.floor.id, local.overlay.id);
+                        outData[i] = local.packedData;
+                    }
+                });
+            }
+
+            AsyncCore.runAll(tasks);
 
-        if(isBuffered()){
+            for(int i = 0; i < size; i++){
+                Tile tile = tiles.geti(i);
+                write(tile, outTiles[i]);
+                if(!buffered) tile.setPackedData(outData[i]);
+            }
+        }else if(buffered){
+            ensureBuffers(size);
             //buffer of tiles used, each tile packed into a long struct
-            long[] buffer = new long[tiles.width * tiles.height];
+            long[] buffer = packedTiles;
 
-            for(int i = 0; i < tiles.width * tiles.height; i++){
+            for(int i = 0; i < size; i++){
                 in.set(tiles.geti(i));
                 apply(in);
 
@@ -29,20 +69,8 @@ public abstract class GenerateFilter implements Cloneable{
             }
 
             //write to buffer
-            for(int i = 0; i < tiles.width * tiles.height; i++){
-                Tile tile = tiles.geti(i);
-                long b = buffer[i];
-
-                Block block = Vars.content.block(PackTile.block(b)), floorb = Vars.content.block(PackTile.floor(b)), overlay = Vars.content.block(PackTile.overlay(b));
-
-                if(floorb instanceof Floor floor){
-                    tile.setFloor(floor);
-                    tile.setOverlay(!floor.hasSurface() && overlay.asFloor().needsSurface && overlay instanceof OreBlock ? Blocks.air : overlay);
-                }
-
-                if(!tile.block().synthetic() && !block.synthetic()){
-                    tile.setBlock(block);
-                }
+            for(int i = 0; i < size; i++){
+                write(tiles.geti(i), buffer[i]);
             }
         }else{
             for(Tile tile : tiles){
@@ -62,6 +90,27 @@ public abstract class GenerateFilter implements Cloneable{
         }
     }
 
+    private static void ensureBuffers(int size){
+        if(packedTiles.length < size){
+            packedTiles = new long[size];
+            packedData = new long[size];
+        }
+    }
+
+    /** Writes a packed tile back into the world, like the unbuffered path does. */
+    private static void write(Tile tile, long packed){
+        Block block = Vars.content.block(PackTile.block(packed)), floorb = Vars.content.block(PackTile.floor(packed)), overlay = Vars.content.block(PackTile.overlay(packed));
+
+        if(floorb instanceof Floor floor){
+            tile.setFloor(floor);
+            tile.setOverlay(!floor.hasSurface() && overlay.asFloor().needsSurface && overlay instanceof OreBlock ? Blocks.air : overlay);
+        }
+
+        if(!tile.block().synthetic() && !block.synthetic()){
+            tile.setBlock(block);
+        }
+    }
+
     /** @return a new array of options for configuring this filter */
     public abstract FilterOption[] options();
 
@@ -96,6 +145,14 @@ public abstract class GenerateFilter implements Cloneable{
         return false;
     }
 
+    /**
+     * @return whether {@link #apply(GenerateInput)} can run on several inputs at once: it only reads tiles through its input, and does not modify shared state.
+     * Results are written back once every tile has been processed, so applying the filter in parallel gives the same map as applying it serially.
+     */
+    public boolean isParallel(){
+        return false;
+    }
+
     /** @return whether this filter can *only* be used while generating the map, e.g. is not undoable. */
     public boolean isPost(){
         return false;
@@ -131,6 +188,13 @@ public abstract class GenerateFilter implements Cloneable{
         return Mathf.randomSeed(Pack.longInt(x, y + seed));
     }
 
+    /** {@link #chance(int, int)} at the input position, using the random generator of the input so it can be called from several threads. */
+    protected float chance(GenerateInput in){
+        //seeded exactly like Mathf.randomSeed, so maps generate the same as before
+        in.rand.setSeed(Pack.longInt(in.x, in.y + seed) * 99999);
+        return in.rand.nextFloat();
+    }
+
     public GenerateFilter copy(){
         try{
             return (GenerateFilter) clone();
@@ -151,6 +215,10 @@ public abstract class GenerateFilter implements Cloneable{
 
         TileProvider buffer;
 
+        /** scratch state for filters; never shared between inputs. */
+        final IntSeq scratch = new IntSeq(), scratch2 = new IntSeq();
+        final Rand rand = new Rand();
+
         public void set(int x, int y, Block block, Block floor, Block overlay, long packedData){
             this.floor = floor;
             this.block = block;
@@ -170,6 +238,13 @@ public abstract class GenerateFilter implements Cloneable{
             this.height = height;
         }
 
+        /** @return a new input reading from the same tiles, for use on another thread. */
+        public GenerateInput copy(){
+            GenerateInput copy = new GenerateInput();
+            copy.begin(width, height, buffer);
+            return copy;
+        }
+
         Tile tile(float x, float y){
             return buffer.get(Mathf.clamp((int)x, 0, width - 1), Mathf.clamp((int)y, 0, height - 1));
         }
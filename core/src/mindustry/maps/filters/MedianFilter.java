@@ -9,8 +9,6 @@ import mindustry.world.*;
 import static mindustry.Vars.*;
 
 public class MedianFilter extends GenerateFilter{
-    private static final IntSeq blocks = new IntSeq(), floors = new IntSeq();
-
     public float radius = 2;
     public float percentile = 0.5f;
 
@@ -27,6 +25,11 @@ public class MedianFilter extends GenerateFilter{
         return true;
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockSporePine;
@@ -35,6 +38,7 @@ public class MedianFilter extends GenerateFilter{
     @Override
     public void apply(GenerateInput in){
         int rad = (int)radius;
+        IntSeq blocks = in.scratch, floors = in.scratch2;
         blocks.clear();
         floors.clear();
         for(int x = -rad; x <= rad; x++){
@@ -24,6 +24,11 @@ public class NoiseFilter extends GenerateFilter{
         };
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockPebbles;
@@ -23,6 +23,11 @@ public class OreFilter extends GenerateFilter{
         };
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockOreCopper;
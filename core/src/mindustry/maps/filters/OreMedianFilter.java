@@ -9,8 +9,6 @@ import mindustry.maps.filters.FilterOption.*;
 import mindustry.world.*;
 
 public class OreMedianFilter extends GenerateFilter{
-    private static IntSeq blocks = new IntSeq();
-
     public float radius = 2;
     public float percentile = 0.5f;
 
@@ -27,6 +25,11 @@ public class OreMedianFilter extends GenerateFilter{
         return true;
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockOreLead;
@@ -47,6 +50,7 @@ public class OreMedianFilter extends GenerateFilter{
 
         int rad = (int)radius;
 
+        IntSeq blocks = in.scratch;
         blocks.clear();
         for(int x = -rad; x <= rad; x++){
             for(int y = -rad; y <= rad; y++){
@@ -20,6 +20,11 @@ public class ScatterFilter extends GenerateFilter{
         };
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockBoulder;
@@ -28,7 +33,7 @@ public class ScatterFilter extends GenerateFilter{
     @Override
     public void apply(GenerateInput in){
 
-        if(block != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && in.block == Blocks.air && chance(in.x, in.y) <= chance){
+        if(block != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && in.block == Blocks.air && chance(in) <= chance){
             if(!block.isOverlay()){
                 in.block = block;
             }else{
@@ -36,7 +41,7 @@ public class ScatterFilter extends GenerateFilter{
             }
         }
 
-        if(floor != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && chance(in.x, in.y) <= chance){
+        if(floor != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && chance(in) <= chance){
             in.floor = floor;
         }
     }
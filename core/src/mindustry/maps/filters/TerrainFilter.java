@@ -26,6 +26,11 @@ public class TerrainFilter extends GenerateFilter{
         };
     }
 
+    @Override
+    public boolean isParallel(){
+        return true;
+    }
+
     @Override
     public char icon(){
         return Iconc.blockStoneWall;
@@ -15,6 +15,7 @@ import mindustry.*;
 import mindustry.core.*;
 import mindustry.game.*;
 import mindustry.game.EventType.*;
+import mindustry.gen.*;
 import mindustry.net.Administration.*;
 import mindustry.net.Net.*;
 import mindustry.net.Packets.*;
@@ -39,7 +40,25 @@ public class ArcNetProvider implements NetProvider{
     private static final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
     private static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
 
+    /** Size of the TCP write buffer of each server connection. Arc closes connections that overflow it. */
+    static final int serverWriteBufferSize = 32768;
+
+    /** If false, unreliable packets are sent over TCP like everything else. */
+    public static boolean udp = true;
+
+    /** Chance of an unreliable packet being dropped or delivered late on purpose, for testing bad connections. */
+    public volatile float simulatedLoss, simulatedReorder;
+
     private volatile int playerLimitCache, packetSpamLimit;
+    /** Incremented every update. Unreliable packets are tagged with it, so all parts of a snapshot share one frame. */
+    private volatile int frame;
+
+    /** Packets sent to several connections are serialized into this buffer once, then sent to each one as raw bytes. */
+    final ByteBuffer broadcastBuffer = ByteBuffer.allocate(32768);
+    final PacketSerializer broadcastSerializer = new PacketSerializer();
+
+    final UdpChannel clientChannel = new UdpChannel();
+    final Cons<Sequenced> clientSender = packet -> sendUDP(client, packet);
 
     public ArcNetProvider(){
         ArcNet.errorHandler = e -> {
@@ -57,6 +76,7 @@ public class ArcNetProvider implements NetProvider{
         Events.run(Trigger.update, () -> {
             playerLimitCache = netServer.admins.getPlayerLimit();
             packetSpamLimit = Config.packetSpamLimit.num();
+            frame++;
         });
 
         client = new Client(8192, 16384, new PacketSerializer());
@@ -83,6 +103,11 @@ public class ArcNetProvider implements NetProvider{
 
             @Override
             public void received(Connection connection, Object object){
+                if(object instanceof Sequenced seq){
+                    if(!clientChannel.accept(seq)) return;
+                    object = seq.packet;
+                }
+
                 if(!(object instanceof Packet p)) return;
 
                 Core.app.post(() -> {
@@ -96,7 +121,7 @@ public class ArcNetProvider implements NetProvider{
             }
         });
 
-        server = new Server(32768, 16384, new PacketSerializer());
+        server = new Server(serverWriteBufferSize, 16384, new PacketSerializer());
         server.setMulticast(multicastGroup, multicastPort);
         server.setDiscoveryHandler((address, handler) -> {
             ByteBuffer buffer = NetworkIO.writeServerData();
@@ -156,6 +181,11 @@ public class ArcNetProvider implements NetProvider{
                     return;
                 }
 
+                if(object instanceof Sequenced seq){
+                    if(!k.channel.accept(seq)) return;
+                    object = seq.packet;
+                }
+
                 if(!(object instanceof Packet pack)) return;
 
                 Core.app.post(() -> {
@@ -194,7 +224,8 @@ public class ArcNetProvider implements NetProvider{
                     }
                 });
 
-                connectClientTcpOnly(ip, port);
+                clientChannel.reset();
+                connectClientUdp(ip, port);
                 success.run();
             }catch(Exception e){
                 if(netClient.isConnecting()){
@@ -212,7 +243,11 @@ public class ArcNetProvider implements NetProvider{
     @Override
     public void sendClient(Object object, boolean reliable){
         try{
-            client.sendTCP(object);
+            if(reliable || !udp || client.getRemoteAddressUDP() == null){
+                client.sendTCP(object);
+            }else{
+                clientChannel.send(new Sequenced(frame, object), simulatedLoss, simulatedReorder, clientSender);
+            }
             //sending things can cause an under/overflow, catch it and disconnect instead of crashing
         }catch(BufferOverflowException | BufferUnderflowException e){
             net.showError(e);
@@ -353,10 +388,20 @@ public class ArcNetProvider implements NetProvider{
         return connections;
     }
 
+    @Override
+    public Object encodeBroadcast(Object object){
+        if(!(object instanceof Packet)) return object;
+
+        broadcastBuffer.clear();
+        broadcastSerializer.write(broadcastBuffer, object);
+        broadcastBuffer.flip();
+        return broadcastBuffer.asReadOnlyBuffer();
+    }
+
     @Override
     public void hostServer(int port) throws IOException{
         connections.clear();
-        bindServerTcpOnly(port);
+        bindServer(port);
 
         serverThread = new Thread(() -> {
             try{
@@ -377,10 +422,13 @@ public class ArcNetProvider implements NetProvider{
 
     class ArcConnection extends NetConnection{
         public final Connection connection;
+        final UdpChannel channel = new UdpChannel();
+        final Cons<Sequenced> sender;
 
         public ArcConnection(String address, Connection connection){
             super(address);
             this.connection = connection;
+            this.sender = packet -> sendUDP(connection, packet);
         }
 
         @Override
@@ -390,34 +438,21 @@ public class ArcNetProvider implements NetProvider{
 
         @Override
         public void sendStream(Streamable stream){
-            connection.addListener(new InputStreamSender(stream.stream, 1024){
-                int id;
-
-                @Override
-                protected void start(){
-                    //send an object so the receiving side knows how to handle the following chunks
-                    StreamBegin begin = new StreamBegin();
-                    begin.total = stream.stream.available();
-                    begin.type = Net.getPacketId(stream);
-                    connection.sendTCP(begin);
-                    id = begin.id;
-                }
+            flush();
 
-                @Override
-                protected Object next(byte[] bytes){
-                    StreamChunk chunk = new StreamChunk();
-                    chunk.id = id;
-                    chunk.data = bytes;
-                    return chunk; //wrap the byte[] with an object so the receiving side knows how to handle it.
-                }
-            });
+            connection.addListener(new StreamSender(Net.getPacketId(stream), stream.slices()));
         }
 
         @Override
-        public void send(Object object, boolean reliable){
+        protected void sendNow(Object object, boolean reliable){
             try{
                 if(connection.isConnected()){
-                    connection.sendTCP(object);
+                    //clients that could not register UDP get everything over TCP
+                    if(reliable || !udp || connection.getRemoteAddressUDP() == null){
+                        connection.sendTCP(object);
+                    }else{
+                        channel.send(new Sequenced(frame, object), simulatedLoss, simulatedReorder, sender);
+                    }
                 }
             }catch(Exception e){
                 Log.err(e);
@@ -436,6 +471,186 @@ public class ArcNetProvider implements NetProvider{
         }
     }
 
+    /**
+     * Sends a stream whenever the TCP write buffer of the connection has drained, so other packets are never stuck behind the whole stream.
+     * Chunks are slices of the stream's arrays, serialized straight into the write buffer. They start small, so the client shows progress right away,
+     * and grow while the connection keeps up, but never take up more of the write buffer than {@link #reservedWriteSpace} leaves free.
+     */
+    static class StreamSender implements NetListener{
+        /** Chunk size limits. Chunks need to fit into the client's read buffer along with their header. */
+        static final int minChunkSize = 1024, maxChunkSize = 1024 * 15;
+        /**
+         * Write buffer space kept free for snapshots and other packets sent to the connection while the stream is in progress.
+         * Chunks are only sent while the buffer is nearly empty, so this still leaves room for chunks of {@link #maxChunkSize}.
+         */
+        static final int reservedWriteSpace = 1024 * 12;
+
+        final byte type;
+        final byte[][] slices;
+        final StreamChunk chunk = new StreamChunk();
+        int slice, position, chunkSize = minChunkSize;
+        boolean started;
+
+        StreamSender(byte type, byte[][] slices){
+            this.type = type;
+            this.slices = slices;
+        }
+
+        @Override
+        public void idle(Connection connection){
+            if(!started){
+                started = true;
+
+                //send an object so the receiving side knows how to handle the following chunks
+                StreamBegin begin = new StreamBegin();
+                begin.total = Streamable.length(slices);
+                begin.type = type;
+                connection.sendTCP(begin);
+                chunk.id = begin.id;
+            }
+
+            //the chunk is serialized before sendTCP returns, so it can be reused
+            while(slice < slices.length && connection.isIdle()){
+                byte[] data = slices[slice];
+                int space = serverWriteBufferSize - reservedWriteSpace - connection.getTcpWriteBufferSize();
+                if(position < data.length){
+                    if(space <= 0) break;
+
+                    chunk.data = data;
+                    chunk.offset = position;
+                    chunk.length = Math.min(Math.min(chunkSize, space), data.length - position);
+                    connection.sendTCP(chunk);
+                    position += chunk.length;
+
+                    //still idle after sending: the connection can take more at once
+                    if(connection.isIdle()) chunkSize = Math.min(chunkSize * 2, maxChunkSize);
+                }
+
+                if(position >= data.length){
+                    slice++;
+                    position = 0;
+                }
+            }
+
+            if(slice >= slices.length){
+                connection.removeListener(this);
+            }
+        }
+
+        @Override
+        public void disconnected(Connection connection, DcReason reason){
+            connection.removeListener(this);
+        }
+    }
+
+    private void connectClientUdp(String ip, int port) throws Exception{
+        if(!udp){
+            connectClientTcpOnly(ip, port);
+            return;
+        }
+
+        try{
+            client.connect(5000, ip, port, port);
+        }catch(SocketTimeoutException e){
+            //usually UDP registration being blocked by a firewall; if TCP is the problem, the TCP only attempt fails on its own
+            Log.warn("Could not connect with UDP, retrying with TCP only: @", e.getMessage());
+            connectClientTcpOnly(ip, port);
+        }
+    }
+
+    private void bindServer(int port) throws IOException{
+        if(udp){
+            try{
+                server.bind(port, port);
+                return;
+            }catch(IOException e){
+                Log.warn("Could not bind UDP on port @, clients will use TCP only: @", port, e.getMessage());
+            }
+        }
+
+        bindServerTcpOnly(port);
+    }
+
+    private static void sendUDP(Connection connection, Sequenced packet){
+        try{
+            connection.sendUDP(packet);
+        }catch(RuntimeException e){
+            //too large for a datagram; TCP reports real serialization errors
+            connection.sendTCP(packet.packet);
+        }
+    }
+
+    /** @return whether the packet holds complete state that makes older packets of the same type useless. */
+    static boolean replacesOlder(Object packet){
+        return packet instanceof EntitySnapshotCallPacket || packet instanceof StateSnapshotCallPacket || packet instanceof ClientSnapshotCallPacket;
+    }
+
+    /** An unreliable packet, tagged with the frame it was sent in. */
+    public static class Sequenced{
+        public int frame;
+        public Object packet;
+
+        public Sequenced(int frame, Object packet){
+            this.frame = frame;
+            this.packet = packet;
+        }
+    }
+
+    /** Unreliable channel state of one connection. */
+    public static class UdpChannel{
+        /** Latest received frame, by packet ID. */
+        final IntIntMap latest = new IntIntMap();
+        /** Packet delayed by simulated reordering. */
+        @Nullable Sequenced held;
+        /** Amount of stale packets dropped. */
+        public int dropped;
+
+        /** @return false if a newer packet of the same type was received already, in which case this one must be ignored. */
+        public boolean accept(Sequenced packet){
+            if(!(packet.packet instanceof Packet p) || !replacesOlder(p)) return true;
+
+            int id = Net.getPacketId(p);
+            //compare the difference so frames can wrap around
+            if(latest.containsKey(id) && packet.frame - latest.get(id) < 0){
+                dropped++;
+                return false;
+            }
+            latest.put(id, packet.frame);
+            return true;
+        }
+
+        /** Passes a packet to the sender, dropping or delaying it at random to simulate a bad connection. */
+        public void send(Sequenced packet, float loss, float reorder, Cons<Sequenced> sender){
+            if(loss > 0f && Mathf.chance(loss)) return;
+
+            if(reorder > 0f && held == null && Mathf.chance(reorder)){
+                //encoded broadcasts are overwritten by the next one
+                if(packet.packet instanceof ByteBuffer raw){
+                    ByteBuffer copy = ByteBuffer.allocate(raw.remaining());
+                    copy.put(raw.duplicate());
+                    copy.flip();
+                    packet = new Sequenced(packet.frame, copy);
+                }
+                held = packet;
+                return;
+            }
+
+            sender.get(packet);
+
+            if(held != null){
+                Sequenced late = held;
+                held = null;
+                sender.get(late);
+            }
+        }
+
+        public void reset(){
+            latest.clear();
+            held = null;
+            dropped = 0;
+        }
+    }
+
     private void connectClientTcpOnly(String ip, int port) throws Exception{
         try{
             Client.class.getMethod("connect", int.class, String.class, int.class).invoke(client, 5000, ip, port);
@@ -489,6 +704,9 @@ public class ArcNetProvider implements NetProvider{
             byte id = byteBuffer.get();
             if(id == -2){
                 return readFramework(byteBuffer);
+            }else if(id == -3){
+                int frame = byteBuffer.getInt();
+                return new Sequenced(frame, read(byteBuffer));
             }else{
                 //read length int, followed by compressed lz4 data
                 Packet packet = Net.newPacket(id);
@@ -528,10 +746,16 @@ public class ArcNetProvider implements NetProvider{
 
             //write raw buffer
             if(o instanceof ByteBuffer raw){
-                byteBuffer.put(raw);
+                //broadcasts share one buffer between connections, so leave its position alone
+                byteBuffer.put(raw.duplicate());
             }else if(o instanceof FrameworkMessage msg){
                 byteBuffer.put((byte)-2); //code for framework message
                 writeFramework(byteBuffer, msg);
+            }else if(o instanceof Sequenced seq){
+                byteBuffer.put((byte)-3); //code for sequenced packet
+                byteBuffer.putInt(seq.frame);
+                write(byteBuffer, seq.packet);
+                return;
             }else{
                 if(!(o instanceof Packet pack)) throw new RuntimeException("All sent objects must extend Packet! Class: " + o.getClass());
                 byte id = Net.getPacketId(pack);
@@ -54,6 +54,7 @@ public class Net{
         //keep custom extensions after generated packets to preserve base packet IDs.
         registerPacket(ServerInfoRequest::new);
         registerPacket(ServerInfoResponse::new);
+        registerPacket(PacketBatch::new);
     }
 
     /** Registers a new packet type for serialization. */
@@ -231,8 +232,10 @@ public class Net{
     /** Send an object to all connected clients, or to the server if this is a client.*/
     public void send(Object object, boolean reliable){
         if(server){
-            for(NetConnection con : provider.getConnections()){
-                con.send(object, reliable);
+            var connections = provider.getConnections();
+            Object encoded = several(connections, null, reliable) ? encodeBroadcast(object) : object;
+            for(NetConnection con : connections){
+                con.send(con.batching && reliable ? object : encoded, reliable);
             }
         }else{
             provider.sendClient(object, reliable);
@@ -241,13 +244,39 @@ public class Net{
 
     /** Send an object to everyone EXCEPT a certain client. Server-side only.*/
     public void sendExcept(NetConnection except, Object object, boolean reliable){
-        for(NetConnection con : getConnections()){
+        var connections = provider.getConnections();
+        Object encoded = several(connections, except, reliable) ? encodeBroadcast(object) : object;
+        for(NetConnection con : connections){
             if(con != except){
-                con.send(object, reliable);
+                con.send(con.batching && reliable ? object : encoded, reliable);
             }
         }
     }
 
+    /**
+     * @return the object encoded once for all connections, or the object itself if it could not be encoded, e.g. because it is too large.
+     * In that case every connection serializes it separately, and handles the failure like any other packet it cannot send.
+     */
+    private Object encodeBroadcast(Object object){
+        try{
+            return provider.encodeBroadcast(object);
+        }catch(Exception e){
+            return object;
+        }
+    }
+
+    /**
+     * @return whether at least two connections other than {@code except} send the packet right away, making it worth to encode it once for all of them.
+     * Batching connections encode reliable packets into their batch instead.
+     */
+    private static boolean several(Iterable<? extends NetConnection> connections, @Nullable NetConnection except, boolean reliable){
+        int count = 0;
+        for(NetConnection con : connections){
+            if(con != except && !(con.batching && reliable) && ++count >= 2) return true;
+        }
+        return false;
+    }
+
     public @Nullable StreamBuilder getCurrentStream(){
         return currentStream;
     }
@@ -280,7 +309,7 @@ public class Net{
             if(builder == null){
                 throw new RuntimeException("Received stream chunk without a StreamBegin beforehand!");
             }
-            builder.add(c.data);
+            builder.add(c.data, c.offset, c.length);
 
             ui.loadfrag.setProgress(builder.progress());
             ui.loadfrag.snapProgress();
@@ -410,6 +439,15 @@ public class Net{
         /** Return all connected users. */
         Iterable<? extends NetConnection> getConnections();
 
+        /**
+         * Encodes an object that is about to be sent to several connections, so the work is done once instead of per connection.
+         * The result is passed to {@link NetConnection#send(Object, boolean)} in place of the object, and is only valid until the next call.
+         * If this throws, the object is sent to each connection as it is.
+         */
+        default Object encodeBroadcast(Object object){
+            return object;
+        }
+
         /** Close the server connection. */
         void closeServer();
 
@@ -6,8 +6,6 @@ import mindustry.entities.units.*;
 import mindustry.gen.*;
 import mindustry.net.Packets.*;
 
-import java.io.*;
-
 import static mindustry.Vars.*;
 
 public abstract class NetConnection{
@@ -26,6 +24,14 @@ public abstract class NetConnection{
     public int snapshotsSent;
     /** Timestamp of last received snapshot. */
     public long lastReceivedClientTime;
+    /** Entity payloads of recently sent snapshots, used as delta baselines. */
+    public final SnapshotHistory sentSnapshots = new SnapshotHistory();
+    /** ID of the next entity snapshot sent to this connection. */
+    public int nextSnapshotID;
+    /** ID of the last entity snapshot acknowledged by the client, or -1 if only full snapshots can be sent. */
+    public int snapshotBaseline = -1;
+    /** Acknowledgements of snapshots sent before this ID are ignored, as the client requested a resync after them. */
+    public int snapshotResyncID;
     /** Build requests that have been recently rejected. This is cleared every snapshot. */
     public Seq<BuildPlan> rejectedRequests = new Seq<>();
     /** Handles chat spam rate limits. */
@@ -35,6 +41,10 @@ public abstract class NetConnection{
 
     public boolean hasConnected, hasBegunConnecting, hasDisconnected;
     public float viewWidth, viewHeight, viewX, viewY;
+    /** If true, reliable packets are collected and sent together once per update, see {@link #flush()}. */
+    public boolean batching;
+
+    private @Nullable PacketBatch batch;
 
     public NetConnection(String address){
         this.address = address;
@@ -81,6 +91,7 @@ public abstract class NetConnection{
             Call.kick(this, reason);
         }
 
+        flush();
         kickDisconnect();
 
         netServer.admins.save();
@@ -96,29 +107,52 @@ public abstract class NetConnection{
     }
 
     public void sendStream(Streamable stream){
-        try{
-            int cid;
-            StreamBegin begin = new StreamBegin();
-            begin.total = stream.stream.available();
-            begin.type = Net.getPacketId(stream);
-            send(begin, true);
-            cid = begin.id;
-
-            while(stream.stream.available() > 0){
-                byte[] bytes = new byte[Math.min(maxTcpSize, stream.stream.available())];
-                stream.stream.read(bytes);
+        flush();
+
+        byte[][] slices = stream.slices();
+        StreamBegin begin = new StreamBegin();
+        begin.total = Streamable.length(slices);
+        begin.type = Net.getPacketId(stream);
+        send(begin, true);
 
+        for(byte[] slice : slices){
+            for(int position = 0; position < slice.length; position += maxTcpSize){
                 StreamChunk chunk = new StreamChunk();
-                chunk.id = cid;
-                chunk.data = bytes;
+                chunk.id = begin.id;
+                chunk.data = slice;
+                chunk.offset = position;
+                chunk.length = Math.min(maxTcpSize, slice.length - position);
                 send(chunk, true);
             }
-        }catch(IOException e){
-            throw new RuntimeException(e);
         }
     }
 
-    public abstract void send(Object object, boolean reliable);
+    /** Sends an object, or adds it to the current batch if {@link #batching} is enabled. */
+    public void send(Object object, boolean reliable){
+        if(batching && reliable && object instanceof Packet packet && !(packet instanceof StreamBegin || packet instanceof StreamChunk)){
+            if(batch == null) batch = new PacketBatch();
+            if(batch.add(packet)) return;
+
+            //batch is full, start a new one
+            flush();
+            if(batch.add(packet)) return;
+        }
+
+        //nothing sent reliably may overtake the batched packets
+        if(reliable) flush();
+        sendNow(object, reliable);
+    }
+
+    /** Sends all batched packets. Called at the end of every server update. */
+    public void flush(){
+        if(batch == null || batch.isEmpty()) return;
+
+        sendNow(batch, true);
+        batch.clear();
+    }
+
+    /** Sends an object right away. */
+    protected abstract void sendNow(Object object, boolean reliable);
 
     public abstract void close();
 }
@@ -25,48 +25,58 @@ public class NetworkIO{
     public static void writeWorld(Player player, OutputStream os){
 
         try(DataOutputStream stream = new DataOutputStream(os)){
-            //write all researched content to rules if hosting
-            if(state.isCampaign()){
-                state.rules.researched.clear();
-                for(ContentType type : ContentType.all){
-                    for(Content c : content.getBy(type)){
-                        if(c instanceof UnlockableContent u && u.unlocked() && u.techNode != null){
-                            state.rules.researched.add(u);
-                        }
+            writeWorldState(player, stream);
+            writeWorldMap(stream);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes the first part of the world data: rules, wave state and the player. This differs for every player, and changes every tick. */
+    public static void writeWorldState(Player player, DataOutputStream stream) throws IOException{
+        //write all researched content to rules if hosting
+        if(state.isCampaign()){
+            state.rules.researched.clear();
+            for(ContentType type : ContentType.all){
+                for(Content c : content.getBy(type)){
+                    if(c instanceof UnlockableContent u && u.unlocked() && u.techNode != null){
+                        state.rules.researched.add(u);
                     }
                 }
             }
-
-            stream.writeUTF(JsonIO.write(state.rules));
-            stream.writeUTF(JsonIO.write(state.mapLocales));
-            SaveIO.getSaveWriter().writeStringMap(stream, state.map.tags);
-
-            stream.writeInt(state.wave);
-            stream.writeFloat(state.wavetime);
-            stream.writeDouble(state.tick);
-            stream.writeLong(GlobalVars.rand.seed0);
-            stream.writeLong(GlobalVars.rand.seed1);
-
-            stream.writeInt(player.id);
-            player.write(new Writes(stream));
-
-            SaveIO.getSaveWriter().writeContentHeader(stream);
-            SaveIO.getSaveWriter().writeContentPatches(stream);
-            SaveIO.getSaveWriter().writeMap(stream);
-            SaveIO.getSaveWriter().writeTeamBlocks(stream);
-            SaveIO.getSaveWriter().writeMarkers(stream);
-            SaveIO.getSaveWriter().writeCustomChunks(stream, true);
-        }catch(IOException e){
-            throw new RuntimeException(e);
         }
+
+        //binary JSON is faster to write and read, and not limited to 64KB like writeUTF
+        JsonIO.writeBytes(state.rules, null, stream);
+        JsonIO.writeBytes(state.mapLocales, null, stream);
+        SaveIO.getSaveWriter().writeStringMap(stream, state.map.tags);
+
+        stream.writeInt(state.wave);
+        stream.writeFloat(state.wavetime);
+        stream.writeDouble(state.tick);
+        stream.writeLong(GlobalVars.rand.seed0);
+        stream.writeLong(GlobalVars.rand.seed1);
+
+        stream.writeInt(player.id);
+        player.write(new Writes(stream));
+    }
+
+    /** Writes the second part of the world data: content, tiles, buildings, team blocks, markers and custom chunks. This is the same for every player. */
+    public static void writeWorldMap(DataOutputStream stream) throws IOException{
+        SaveIO.getSaveWriter().writeContentHeader(stream);
+        SaveIO.getSaveWriter().writeContentPatches(stream);
+        SaveIO.getSaveWriter().writeMap(stream);
+        SaveIO.getSaveWriter().writeTeamBlocks(stream);
+        SaveIO.getSaveWriter().writeMarkers(stream);
+        SaveIO.getSaveWriter().writeCustomChunks(stream, true);
     }
 
     public static void loadWorld(InputStream is){
 
         try(DataInputStream stream = new DataInputStream(is)){
             Time.clear();
-            state.rules = JsonIO.read(Rules.class, stream.readUTF());
-            state.mapLocales = JsonIO.read(MapLocales.class, stream.readUTF());
+            state.rules = JsonIO.readBytes(Rules.class, null, stream);
+            state.mapLocales = JsonIO.readBytes(MapLocales.class, null, stream);
             state.map = new Map(SaveIO.getSaveWriter().readStringMap(stream));
 
             state.wave = stream.readInt();
@@ -1,14 +1,18 @@
 package mindustry.net;
 
 import arc.*;
+import arc.func.*;
 import arc.struct.*;
 import arc.util.io.*;
 import arc.util.serialization.*;
 import mindustry.core.*;
 import mindustry.io.*;
 
+import java.io.*;
 import java.util.zip.*;
 
+import static mindustry.Vars.*;
+
 /** Class for storing all packets. */
 public class Packets{
 
@@ -95,23 +99,29 @@ public class Packets{
     public static class StreamChunk extends Packet{
         public int id;
         public byte[] data;
+        /** Part of {@link #data} that this chunk holds, so all chunks can share the array of the whole stream. */
+        public int offset, length;
 
         @Override
         public void write(Writes buffer){
             buffer.i(id);
-            buffer.s((short)data.length);
-            buffer.b(data);
+            buffer.s((short)length);
+            buffer.b(data, offset, length);
         }
 
         @Override
         public void read(Reads buffer){
             id = buffer.i();
-            data = buffer.b(buffer.s());
+            length = buffer.s() & 0xffff;
+            data = buffer.b(length);
+            offset = 0;
         }
     }
 
     public static class ConnectPacket extends Packet{
         public int version;
+        /** Protocol revision of the client; 0 for clients that predate it. */
+        public int protocol;
         public String versionType;
         public Seq<String> mods;
         public String name, locale, uuid, usid, deviceHash;
@@ -139,6 +149,16 @@ public class Packets{
             for(int i = 0; i < mods.size; i++){
                 TypeIO.writeString(buffer, mods.get(i));
             }
+            buffer.i(Version.protocol);
+        }
+
+        @Override
+        public void read(Reads buffer, int length){
+            //older clients do not send a protocol, so read from a copy to tell whether anything is left
+            ByteArrayInputStream bytes = new ByteArrayInputStream(buffer.b(length));
+            Reads in = new Reads(new DataInputStream(bytes));
+            read(in);
+            protocol = bytes.available() >= 4 ? in.i() : 0;
         }
 
         @Override
@@ -195,4 +215,77 @@ public class Packets{
             return priorityHigh;
         }
     }
+
+    /**
+     * Reliable packets sent to a connection during one update, compressed and sent together.
+     * Each one is handled separately on the client, with its own priority.
+     * @see NetConnection#batching
+     */
+    public static class PacketBatch extends Packet{
+        /** Maximum size of the packets in one batch. Larger packets are sent on their own. */
+        public static final int maxSize = 8192;
+
+        final ReusableByteOutStream out = new ReusableByteOutStream(maxSize), scratch = new ReusableByteOutStream(1024);
+        final Writes scratchWrites = new Writes(new DataOutputStream(scratch));
+        public int count;
+        public byte[] data = NODATA;
+
+        /** @return false if the packet does not fit into this batch; it needs to be sent first. */
+        public boolean add(Packet packet){
+            scratch.reset();
+            packet.write(scratchWrites);
+            int length = scratch.size();
+
+            if(out.size() + length + 3 > maxSize || length > 0xffff) return false;
+
+            out.write(Net.getPacketId(packet));
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(scratch.getBytes(), 0, length);
+            count++;
+            return true;
+        }
+
+        public boolean isEmpty(){
+            return count == 0;
+        }
+
+        public void clear(){
+            out.reset();
+            count = 0;
+        }
+
+        @Override
+        public void write(Writes buffer){
+            buffer.s(count);
+            buffer.b(out.getBytes(), 0, out.size());
+        }
+
+        @Override
+        public void read(Reads buffer, int length){
+            count = buffer.s() & 0xffff;
+            data = buffer.b(length - 2);
+        }
+
+        /** Reads the received packets in the order they were sent. */
+        public void each(Cons<Packet> cons){
+            Reads read = new Reads(new DataInputStream(new ByteArrayInputStream(data)));
+            for(int i = 0; i < count; i++){
+                Packet packet = Net.newPacket(read.b());
+                packet.read(read, read.s() & 0xffff);
+                cons.get(packet);
+            }
+        }
+
+        @Override
+        public void handleClient(){
+            each(packet -> net.handleClientReceived(packet));
+        }
+
+        @Override
+        public int getPriority(){
+            //the batched packets are queued or dropped by their own priority
+            return priorityHigh;
+        }
+    }
 }
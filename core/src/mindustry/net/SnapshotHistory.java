@@ -0,0 +1,87 @@
+package mindustry.net;
+
+import arc.struct.*;
+import arc.util.io.*;
+
+/**
+ * Sync payloads of the most recent entity snapshots, keyed by snapshot ID and entity ID.
+ * The server keeps one per connection for the snapshots it sent, and the client keeps one for the snapshots it received;
+ * together they act as the baselines that delta-compressed entity snapshots are encoded against.
+ */
+public class SnapshotHistory{
+    /** Default amount of snapshots remembered. Older baselines cannot be used. */
+    public static final int defaultCapacity = 32;
+
+    /** Entity record types in a snapshot. Full records carry the whole payload, unchanged records carry nothing, and XOR records carry the payload XOR-ed with the baseline. */
+    public static final byte recordFull = 0, recordUnchanged = 1, recordXor = 2;
+
+    private final Slot[] slots;
+
+    public SnapshotHistory(int capacity){
+        slots = new Slot[capacity];
+    }
+
+    public SnapshotHistory(){
+        this(defaultCapacity);
+    }
+
+    /** Clears the slot used by this snapshot ID, so payloads can be recorded for it. */
+    public void begin(int snapshot){
+        Slot slot = slots[index(snapshot)];
+        if(slot == null){
+            slot = slots[index(snapshot)] = new Slot();
+        }
+        slot.snapshot = snapshot;
+        slot.data.reset();
+        slot.offsets.clear();
+        slot.lengths.clear();
+    }
+
+    /** @return whether payloads of this snapshot are still available. */
+    public boolean has(int snapshot){
+        Slot slot = snapshot < 0 ? null : slots[index(snapshot)];
+        return slot != null && slot.snapshot == snapshot;
+    }
+
+    /** Records the payload of an entity. The snapshot must have been started with {@link #begin(int)}. */
+    public void put(int snapshot, int entity, byte[] bytes, int offset, int length){
+        Slot slot = slots[index(snapshot)];
+        slot.offsets.put(entity, slot.data.size());
+        slot.lengths.put(entity, length);
+        slot.data.write(bytes, offset, length);
+    }
+
+    /** @return the payload length of an entity in a snapshot, or -1 if it is not available. */
+    public int length(int snapshot, int entity){
+        return has(snapshot) ? slots[index(snapshot)].lengths.get(entity, -1) : -1;
+    }
+
+    /** @return the offset of an entity's payload in {@link #bytes(int)}. Only valid if {@link #length(int, int)} is not -1. */
+    public int offset(int snapshot, int entity){
+        return slots[index(snapshot)].offsets.get(entity, 0);
+    }
+
+    /** @return the backing array of all payloads in a snapshot. Only valid until the snapshot is overwritten. */
+    public byte[] bytes(int snapshot){
+        return slots[index(snapshot)].data.getBytes();
+    }
+
+    /** Forgets all snapshots. */
+    public void clear(){
+        for(Slot slot : slots){
+            if(slot != null){
+                slot.snapshot = -1;
+            }
+        }
+    }
+
+    private int index(int snapshot){
+        return (snapshot & Integer.MAX_VALUE) % slots.length;
+    }
+
+    static class Slot{
+        int snapshot = -1;
+        final ReusableByteOutStream data = new ReusableByteOutStream();
+        final IntIntMap offsets = new IntIntMap(), lengths = new IntIntMap();
+    }
+}
@@ -3,9 +3,30 @@ package mindustry.net;
 import mindustry.net.Packets.*;
 
 import java.io.*;
+import java.util.*;
 
 public class Streamable extends Packet{
     public transient ByteArrayInputStream stream;
+    /** Data to send as consecutive arrays, which are sent without being copied. Only used when sending; if null, {@link #stream} is sent instead. */
+    public transient byte[][] slices;
+
+    /** @return the data to send, as {@link #slices} or the remaining contents of {@link #stream}. */
+    public byte[][] slices(){
+        if(slices != null) return slices;
+
+        byte[] bytes = new byte[stream.available()];
+        stream.read(bytes, 0, bytes.length);
+        return new byte[][]{bytes};
+    }
+
+    /** @return the total length of several slices. */
+    public static int length(byte[][] slices){
+        int total = 0;
+        for(byte[] slice : slices){
+            total += slice.length;
+        }
+        return total;
+    }
 
     @Override
     public int getPriority(){
@@ -13,37 +34,42 @@ public class Streamable extends Packet{
     }
 
     public static class StreamBuilder{
+        /** Streams up to this size are received into an array of their final size, instead of a growing one. */
+        static final int maxPreallocated = 1024 * 1024 * 32;
+
         public final int id;
         public final byte type;
         public final int total;
-        public final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        private byte[] data;
+        private int size;
 
         public StreamBuilder(StreamBegin begin){
             id = begin.id;
             type = begin.type;
             total = begin.total;
+            data = new byte[Math.max(Math.min(total, maxPreallocated), 0)];
         }
 
         public float progress(){
-            return (float)stream.size() / total;
+            return (float)size / total;
         }
 
-        public void add(byte[] bytes){
-            try{
-                stream.write(bytes);
-            }catch(IOException e){
-                throw new RuntimeException(e);
+        public void add(byte[] bytes, int offset, int length){
+            if(size + length > data.length){
+                data = Arrays.copyOf(data, Math.max(size + length, data.length * 2));
             }
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
         }
 
         public Streamable build(){
             Streamable s = Net.newPacket(type);
-            s.stream = new ByteArrayInputStream(stream.toByteArray());
+            s.stream = new ByteArrayInputStream(data, 0, size);
             return s;
         }
 
         public boolean isDone(){
-            return stream.size() >= total;
+            return size >= total;
         }
     }
 }
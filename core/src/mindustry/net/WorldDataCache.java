@@ -0,0 +1,157 @@
+package mindustry.net;
+
+import arc.*;
+import arc.util.*;
+import arc.util.io.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Builds the compressed world data sent to joining players.
+ * The map section, which is by far the largest part, is serialized and compressed once and then reused for every player joining in the same tick.
+ * Only the small per-player section in front of it is compressed for each player, and the two are joined into a single zlib stream,
+ * so clients read exactly what {@link NetworkIO#writeWorld(Player, OutputStream)} would have produced.
+ */
+public class WorldDataCache{
+    /** Maximum age of the cached map section in milliseconds. Bounds staleness while the game is paused, when nothing invalidates the cache. */
+    public static final long maxAge = 1000;
+
+    private static final int adlerBase = 65521;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final ReusableByteOutStream raw = new ReusableByteOutStream(1024 * 64);
+    private final DataOutputStream rawStream = new DataOutputStream(raw);
+    private final ReusableByteOutStream compressed = new ReusableByteOutStream(1024 * 64);
+    private final byte[] buffer = new byte[1024 * 16];
+    private final Adler32 adler = new Adler32();
+
+    /** Raw deflate blocks of the map section, ending with the final block. */
+    private byte[] map = {};
+    private int mapAdler, mapLength;
+    private long cachedUpdate = -1, cachedTime;
+    private int version, cachedVersion = -1;
+
+    /** Amount of times the map section was reused, and built. */
+    public int hits, misses;
+
+    public WorldDataCache(){
+        Events.on(WorldLoadEvent.class, e -> invalidate());
+        Events.on(ResetEvent.class, e -> invalidate());
+        Events.on(TileChangeEvent.class, e -> invalidate());
+        Events.on(TileFloorChangeEvent.class, e -> invalidate());
+        Events.on(TileOverlayChangeEvent.class, e -> invalidate());
+        Events.on(BuildTeamChangeEvent.class, e -> invalidate());
+        //configuring works while paused
+        Events.on(ConfigEvent.class, e -> invalidate());
+    }
+
+    /** Marks the cached map section as outdated. */
+    public void invalidate(){
+        version++;
+    }
+
+    /** @return the compressed world data for a player. Must be called on the main thread. */
+    public byte[] write(Player player){
+        byte[][] slices = writeSlices(player);
+        byte[] result = new byte[Streamable.length(slices)];
+        int position = 0;
+        for(byte[] slice : slices){
+            System.arraycopy(slice, 0, result, position, slice.length);
+            position += slice.length;
+        }
+        return result;
+    }
+
+    /**
+     * @return the compressed world data for a player, split into the player section, the map section and the checksum.
+     * The map section is shared by every player until the map changes, and is never modified. Must be called on the main thread.
+     */
+    public byte[][] writeSlices(Player player){
+        try{
+            if(cachedVersion != version || cachedUpdate != state.updateId || Time.timeSinceMillis(cachedTime) > maxAge){
+                raw.reset();
+                NetworkIO.writeWorldMap(rawStream);
+                rawStream.flush();
+
+                adler.reset();
+                adler.update(raw.getBytes(), 0, raw.size());
+                mapAdler = (int)adler.getValue();
+                mapLength = raw.size();
+
+                compressed.reset();
+                deflate(raw.getBytes(), raw.size(), true);
+                map = Arrays.copyOf(compressed.getBytes(), compressed.size());
+
+                cachedVersion = version;
+                cachedUpdate = state.updateId;
+                cachedTime = Time.millis();
+                misses++;
+            }else{
+                hits++;
+            }
+
+            raw.reset();
+            NetworkIO.writeWorldState(player, rawStream);
+            rawStream.flush();
+
+            adler.reset();
+            adler.update(raw.getBytes(), 0, raw.size());
+            int checksum = combineAdler((int)adler.getValue(), mapAdler, mapLength);
+
+            compressed.reset();
+            //zlib header: deflate with a 32K window, fastest compression
+            compressed.write(0x78);
+            compressed.write(0x01);
+            //the sync flush ends the player section on a byte boundary without a final block, so the map blocks can follow directly
+            deflate(raw.getBytes(), raw.size(), false);
+
+            return new byte[][]{
+                Arrays.copyOf(compressed.getBytes(), compressed.size()),
+                map,
+                {(byte)(checksum >>> 24), (byte)(checksum >>> 16), (byte)(checksum >>> 8), (byte)checksum}
+            };
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Compresses bytes into {@link #compressed} as raw deflate blocks. If not finishing, the output ends with a sync flush instead of a final block. */
+    private void deflate(byte[] bytes, int length, boolean finish) throws IOException{
+        deflater.reset();
+        deflater.setInput(bytes, 0, length);
+
+        if(finish){
+            deflater.finish();
+            while(!deflater.finished()){
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }else{
+            //a full output buffer means there may be more pending output
+            int written;
+            do{
+                written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, written);
+            }while(written == buffer.length);
+        }
+    }
+
+    /** @return the Adler-32 checksum of two concatenated byte sequences, from their individual checksums and the length of the second one. */
+    static int combineAdler(int adler1, int adler2, int length2){
+        long rem = length2 % adlerBase;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % adlerBase;
+        sum1 += (adler2 & 0xffff) + adlerBase - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + adlerBase - rem;
+        if(sum1 >= adlerBase) sum1 -= adlerBase;
+        if(sum1 >= adlerBase) sum1 -= adlerBase;
+        if(sum2 >= ((long)adlerBase << 1)) sum2 -= ((long)adlerBase << 1);
+        if(sum2 >= adlerBase) sum2 -= adlerBase;
+        return (int)(sum1 | (sum2 << 16));
+    }
+}
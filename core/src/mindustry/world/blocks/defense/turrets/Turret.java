@@ -41,6 +41,11 @@ public class Turret extends ReloadTurret{
     public float targetInterval = 20;
     /** Target interval for when this turret already has a valid target. -1 = targetInterval */
     public float newTargetInterval = -1f;
+    /**
+     * If true, turrets without a target stop updating between attempts at finding one; see {@link Building#doze(int, float)}.
+     * Only enable this for turrets whose builds do nothing more in updateTile() than this class, as {@link TurretBuild#isIdle()} cannot see anything else.
+     */
+    public boolean dozeWhenIdle = false;
 
     /** Maximum ammo units stored. */
     public int maxAmmo = 30;
@@ -432,6 +437,23 @@ public class Turret extends ReloadTurret{
             return (target != null || wasShooting) && enabled && activationTimer <= 0;
         }
 
+        /** @return whether updating this turret does nothing until it finds a target or is controlled. */
+        public boolean isIdle(){
+            if(target != null || wasShooting || alwaysShooting || isControlled() || logicControlled() || soundLoop != null || queuedBullets > 0 || activationTimer > 0f ||
+                warmupHold > 0f || shootWarmup > 0.0001f || heat > 0f || curRecoil > 0f || charge > 0f || reloadCounter < reload){
+                return false;
+            }
+
+            if(curRecoils != null){
+                for(float recoil : curRecoils){
+                    if(recoil > 0f) return false;
+                }
+            }
+
+            //coolant keeps being used while reloaded
+            return coolant == null || efficiency <= 0f || coolant.efficiency(this) <= 0f;
+        }
+
         public void targetPosition(Posc pos){
             if(!hasAmmo() || pos == null) return;
             targetPos.set(pos);
@@ -574,6 +596,11 @@ public class Turret extends ReloadTurret{
                     updateShooting();
                 }
             }
+
+            if(dozeWhenIdle && isIdle()){
+                //targets are only looked for every targetInterval ticks anyway
+                doze(WakeFlag.all, targetInterval);
+            }
         }
 
         @Override
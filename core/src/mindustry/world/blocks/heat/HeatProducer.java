@@ -15,6 +15,8 @@ public class HeatProducer extends GenericCrafter{
 
     public HeatProducer(String name){
         super(name);
+        //heat decays while idle
+        dozeWhenIdle = false;
 
         drawer = new DrawMulti(new DrawDefault(), new DrawHeatOutput());
         rotateDraw = false;
@@ -527,13 +527,9 @@ public class LogicBlock extends Block{
 
                 if(accumulator > maxInstructionScale * ipt) accumulator = maxInstructionScale * ipt;
 
-                while(accumulator >= 1f){
-                    executor.runOnce();
-                    if(executor.yield){
-                        executor.yield = false;
-                        break;
-                    }
-                    accumulator --;
+                if(accumulator >= 1f){
+                    accumulator -= executor.run((int)accumulator);
+                    executor.yield = false;
                 }
             }
         }
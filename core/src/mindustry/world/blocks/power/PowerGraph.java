@@ -4,6 +4,7 @@ import arc.math.*;
 import arc.struct.*;
 import arc.util.*;
 import mindustry.gen.*;
+import mindustry.world.meta.*;
 
 public class PowerGraph{
     private static final Queue<Building> queue = new Queue<>();
@@ -199,6 +200,8 @@ public class PowerGraph{
                     consumer.power.status = Mathf.clamp(consumer.power.status + maximumRate / cons.capacity);
                 }
             }else{
+                float previous = consumer.power.status;
+
                 //valid consumers get power as usual
                 if(consumer.shouldConsumePower){
                     consumer.power.status = coverage;
@@ -209,6 +212,10 @@ public class PowerGraph{
                         consumer.power.status = 0f;
                     }
                 }
+
+                if(previous <= 0f && consumer.power.status > 0f){
+                    consumer.wake(WakeFlag.power);
+                }
             }
         }
     }
@@ -46,6 +46,13 @@ public class GenericCrafter extends Block{
     /** Only used for legacy cultivator blocks. */
     @NoPatch
     public boolean legacyReadWarmup = false;
+    /**
+     * If true, crafters without inputs and outputs stop updating until items, liquids or power arrive; see {@link Building#doze(int, float)}.
+     * Must be false for crafters whose efficiency can change without such an event, like ones depending on heat.
+     */
+    public boolean dozeWhenIdle = true;
+    /** Time in ticks after which idle crafters check their inputs again, even if nothing woke them. */
+    public float idleDozeTime = 60f;
 
     public DrawBlock drawer = new DrawDefault();
 
@@ -250,6 +257,25 @@ public class GenericCrafter extends Block{
             }
 
             dumpOutputs();
+
+            if(dozeWhenIdle && efficiency <= 0f && warmup <= 0f && progress < 1f && !hasOutputs()){
+                doze(WakeFlag.all, idleDozeTime);
+            }
+        }
+
+        /** @return whether this crafter holds any of its outputs. */
+        public boolean hasOutputs(){
+            if(outputItems != null){
+                for(var output : outputItems){
+                    if(items.has(output.item)) return true;
+                }
+            }
+            if(outputLiquids != null){
+                for(var output : outputLiquids){
+                    if(liquids.get(output.liquid) > 0.0001f) return true;
+                }
+            }
+            return false;
         }
 
         @Override
@@ -18,6 +18,8 @@ public class HeatCrafter extends GenericCrafter{
 
     public HeatCrafter(String name){
         super(name);
+        //heat changes without waking the building
+        dozeWhenIdle = false;
     }
 
     @Override
@@ -0,0 +1,21 @@
+package mindustry.world.meta;
+
+/**
+ * Events that wake a dormant building; see {@link mindustry.gen.Building#doze(int, float)}.
+ * Proximity changes, rotation, construction and enabling through logic always wake buildings, through {@link mindustry.gen.Building#noSleep()}.
+ */
+public class WakeFlag{
+    public static final int
+    /** Items are added to or removed from the building. */
+    items = 1,
+    /** Liquids are added to the building. */
+    liquids = 1 << 1,
+    /** Power satisfaction of the building rises from zero. */
+    power = 1 << 2,
+    /** The building is configured, controlled by a processor, or taken control of by a player. */
+    control = 1 << 3,
+    /** The building takes damage. */
+    damage = 1 << 4,
+
+    all = items | liquids | power | control | damage;
+}
@@ -239,6 +239,12 @@ public class SNet implements SteamNetworkingCallback, SteamMatchmakingCallback,
         return connectionsOut;
     }
 
+    @Override
+    public Object encodeBroadcast(Object object){
+        //steam connections use the same serializer, so they can send the encoded bytes as well
+        return provider.encodeBroadcast(object);
+    }
+
     void disconnectSteamUser(SteamID steamid){
         //a client left
         int sid = steamid.getAccountID();
@@ -426,7 +432,7 @@ public class SNet implements SteamNetworkingCallback, SteamMatchmakingCallback,
         }
 
         @Override
-        public void send(Object object, boolean reliable){
+        protected void sendNow(Object object, boolean reliable){
             try{
                 writeBuffer.limit(writeBuffer.capacity());
                 writeBuffer.position(0);
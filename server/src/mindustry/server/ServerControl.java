@@ -7,6 +7,7 @@ import arc.struct.*;
 import arc.util.*;
 import arc.util.Timer;
 import arc.util.CommandHandler.*;
+import arc.util.io.*;
 import arc.util.Timer.*;
 import arc.util.serialization.*;
 import arc.util.serialization.JsonValue.*;
@@ -32,6 +33,8 @@ import java.net.*;
 import java.time.*;
 import java.time.format.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.regex.*;
 
 import static arc.util.ColorCodes.*;
@@ -50,6 +53,18 @@ public class ServerControl implements ApplicationListener{
     public final Fi logFolder = Core.settings.getDataDirectory().child("logs/");
 
     private final Interval autosaveCount = new Interval();
+    /** Compresses and writes autosaves, so the game thread only has to serialize the world. */
+    private final ExecutorService autosaveExecutor = Threads.executor("Autosave", 1);
+    private volatile boolean autosaving;
+
+    /** Milliseconds the game thread was blocked serializing the last autosave. */
+    public volatile float autosaveStall;
+    /** Milliseconds spent compressing and writing the last autosave in the background. */
+    public volatile float autosaveWriteTime;
+    /** Uncompressed size of the last autosave in bytes. */
+    public volatile int autosaveBytes;
+    /** Total amount of completed and failed autosaves since startup. Incremented by the autosave thread. */
+    public final AtomicInteger autosaves = new AtomicInteger(), autosaveFailures = new AtomicInteger();
 
     public Runnable serverInput = () -> {
         Scanner scan = new Scanner(System.in);
@@ -227,33 +242,9 @@ public class ServerControl implements ApplicationListener{
         //autosave periodically
         Events.run(Trigger.update, () -> {
             if(state.isPlaying() && Config.autosave.bool()){
-                if(autosaveCount.get(Config.autosaveSpacing.num() * 60)){
-                    int max = Config.autosaveAmount.num();
-
-                    //use map file name to make sure it can be saved
-                    String mapName = (state.map.file == null ? "unknown" : state.map.file.nameWithoutExtension()).replace(" ", "_");
-                    String date = autosaveDate.format(LocalDateTime.now());
-
-                    Seq<Fi> autosaves = saveDirectory.findAll(f -> f.name().startsWith("auto_"));
-                    autosaves.sort(f -> -f.lastModified());
-
-                    //delete older saves
-                    if(autosaves.size >= max){
-                        for(int i = max - 1; i < autosaves.size; i++){
-                            autosaves.get(i).delete();
-                        }
-                    }
-
-                    String fileName = "auto_" + mapName + "_" + date + "." + saveExtension;
-                    Fi file = saveDirectory.child(fileName);
-                    info("Autosaving...");
-
-                    try{
-                        SaveIO.save(file);
-                        info("Autosave completed.");
-                    }catch(Throwable e){
-                        err("Autosave failed.", e);
-                    }
+                //skip this autosave if the previous one is still being written
+                if(autosaveCount.get(Config.autosaveSpacing.num() * 60) && !autosaving){
+                    autosave();
                 }
             }
 
@@ -501,6 +492,12 @@ public class ServerControl implements ApplicationListener{
 
                 info("  @ FPS, @ MB used.", Core.graphics.getFramesPerSecond(), Core.app.getJavaHeap() / 1024 / 1024);
 
+                if(autosaves.get() > 0){
+                    info("  Last autosave: @ms stall, @ms write, @ KB (@ MB/s). @ saved, @ failed.",
+                        Strings.fixed(autosaveStall, 1), Strings.fixed(autosaveWriteTime, 1), autosaveBytes / 1024,
+                        Strings.fixed(autosaveBytes / 1024f / 1024f / Math.max(autosaveWriteTime / 1000f, 0.001f), 1), autosaves.get(), autosaveFailures.get());
+                }
+
                 if(Groups.player.size() > 0){
                     info("  Players: @", Groups.player.size());
                     for(Player p : Groups.player){
@@ -1135,6 +1132,39 @@ public class ServerControl implements ApplicationListener{
             info("@ MB collected. Memory usage now at @ MB.", pre - post, post);
         });
 
+        handler.register("profile", "[on/off/reset/dump] [file]", "Profile the game tick, or display the results.", arg -> {
+            String action = arg.length == 0 ? "" : arg[0];
+
+            switch(action){
+                case "on" -> {
+                    profiler.reset();
+                    profiler.enabled = true;
+                    info("Tick profiler enabled.");
+                }
+                case "off" -> {
+                    profiler.enabled = false;
+                    info("Tick profiler disabled. Results are kept until it is enabled again.");
+                }
+                case "reset" -> {
+                    profiler.reset();
+                    info("Tick profiler results cleared.");
+                }
+                case "dump" -> {
+                    Fi file = arg.length > 1 ? Core.files.local(arg[1]) : logFolder.child("profile-" + autosaveDate.format(LocalDateTime.now()) + ".json");
+                    file.writeString(profiler.toJson());
+                    info("Tick profile written to &fi@", file.absolutePath());
+                }
+                case "" -> {
+                    if(profiler.root.ticks == 0){
+                        info("No ticks profiled. Use &lbprofile on&fr to start profiling.");
+                    }else{
+                        info("Tick profile (@, in ms):\n@", profiler.enabled ? "running" : "stopped", profiler.report());
+                    }
+                }
+                default -> err("Invalid action. Use on, off, reset or dump.");
+            }
+        });
+
         handler.register("yes", "Run the last suggested incorrect command.", arg -> {
             if(suggested == null){
                 err("There is nothing to say yes to.");
@@ -1295,6 +1325,71 @@ public class ServerControl implements ApplicationListener{
         }
     }
 
+    /**
+     * Saves the game to a new autosave file. The world is serialized on the calling thread, which must be the main thread;
+     * compression, writing, and removal of old autosaves happen in the background.
+     */
+    public void autosave(){
+        int max = Config.autosaveAmount.num();
+
+        //use map file name to make sure it can be saved
+        String mapName = (state.map.file == null ? "unknown" : state.map.file.nameWithoutExtension()).replace(" ", "_");
+        String date = autosaveDate.format(LocalDateTime.now());
+        Fi file = saveDirectory.child("auto_" + mapName + "_" + date + "." + saveExtension);
+
+        info("Autosaving...");
+
+        long start = Time.nanos();
+        ReusableByteOutStream snapshot;
+        try{
+            snapshot = SaveIO.snapshot();
+        }catch(Throwable e){
+            autosaveFailures.incrementAndGet();
+            err("Autosave failed.", e);
+            return;
+        }
+        autosaveStall = Time.timeSinceNanos(start) / 1000000f;
+
+        autosaving = true;
+        autosaveExecutor.submit(() -> {
+            try{
+                long writeStart = Time.nanos();
+
+                //delete older saves
+                Seq<Fi> oldSaves = saveDirectory.findAll(f -> f.name().startsWith("auto_"));
+                oldSaves.sort(f -> -f.lastModified());
+
+                if(oldSaves.size >= max){
+                    for(int i = max - 1; i < oldSaves.size; i++){
+                        oldSaves.get(i).delete();
+                    }
+                }
+
+                SaveIO.save(file, snapshot.getBytes(), snapshot.size());
+
+                autosaveWriteTime = Time.timeSinceNanos(writeStart) / 1000000f;
+                autosaveBytes = snapshot.size();
+                autosaves.incrementAndGet();
+                Core.app.post(() -> info("Autosave completed in @ms (@ms blocking).", Strings.fixed(autosaveStall + autosaveWriteTime, 1), Strings.fixed(autosaveStall, 1)));
+            }catch(Throwable e){
+                autosaveFailures.incrementAndGet();
+                Core.app.post(() -> err("Autosave failed.", e));
+            }finally{
+                autosaving = false;
+            }
+        });
+    }
+
+    @Override
+    public void dispose(){
+        //let a pending autosave finish writing instead of leaving a truncated file
+        autosaveExecutor.shutdown();
+        try{
+            autosaveExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        }catch(InterruptedException ignored){
+        }
+    }
+
     public void logToFile(String text){
         if(currentLogFile != null && currentLogFile.length() > Config.maxLogLength.num()){
             currentLogFile.writeString("[End of log file. Date: " + dateTime.format(LocalDateTime.now()) + "]\n", true);
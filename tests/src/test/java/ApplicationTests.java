@@ -1,13 +1,23 @@
 import arc.*;
 import arc.backend.headless.*;
 import arc.files.*;
+import arc.func.*;
+import arc.math.*;
 import arc.math.geom.*;
+import arc.net.Client;
+import arc.net.Connection;
+import arc.net.NetListener;
+import arc.net.Server;
 import arc.struct.*;
 import arc.util.*;
 import arc.util.io.*;
 import arc.util.serialization.*;
 import arc.util.serialization.JsonValue.*;
 import mindustry.*;
+import mindustry.ai.*;
+import mindustry.async.*;
+import mindustry.async.PhysicsProcess.*;
+import mindustry.async.PhysicsProcess.PhysicsWorld.*;
 import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.core.GameState.*;
@@ -16,7 +26,10 @@ import mindustry.entities.units.*;
 import mindustry.game.*;
 import mindustry.gen.*;
 import mindustry.io.*;
+import mindustry.logic.*;
 import mindustry.maps.*;
+import mindustry.maps.filters.*;
+import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.mod.*;
 import mindustry.mod.Mods.*;
 import mindustry.net.*;
@@ -24,14 +37,20 @@ import mindustry.net.Packets.*;
 import mindustry.type.*;
 import mindustry.world.*;
 import mindustry.world.blocks.payloads.*;
+import mindustry.world.blocks.production.GenericCrafter.*;
 import mindustry.world.blocks.storage.*;
+import mindustry.world.meta.*;
 import org.json.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.*;
 import org.junit.jupiter.params.provider.*;
 
 import java.io.*;
+import java.net.ServerSocket;
 import java.nio.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.*;
 
 import static mindustry.Vars.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -188,6 +207,228 @@ public class ApplicationTests{
         assertEquals(string, con.name);
     }
 
+    @Test
+    void unreliableSnapshots(){
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        var serializer = new ArcNetProvider.PacketSerializer();
+
+        EntitySnapshotCallPacket snapshot = new EntitySnapshotCallPacket();
+        snapshot.snapshotID = 12;
+        snapshot.baselineID = 10;
+        snapshot.amount = 1;
+        snapshot.data = new byte[]{1, 2, 3};
+
+        serializer.write(buffer, new ArcNetProvider.Sequenced(-5, snapshot));
+        buffer.flip();
+        var read = (ArcNetProvider.Sequenced)serializer.read(buffer);
+
+        assertEquals(-5, read.frame);
+        assertEquals(12, ((EntitySnapshotCallPacket)read.packet).snapshotID);
+        assertArrayEquals(snapshot.data, ((EntitySnapshotCallPacket)read.packet).data);
+
+        //frames wrap around
+        var channel = new ArcNetProvider.UdpChannel();
+        assertTrue(channel.accept(new ArcNetProvider.Sequenced(Integer.MAX_VALUE, snapshot)));
+        assertTrue(channel.accept(new ArcNetProvider.Sequenced(Integer.MIN_VALUE, snapshot)));
+        assertFalse(channel.accept(new ArcNetProvider.Sequenced(Integer.MAX_VALUE, snapshot)));
+        //parts of the same snapshot share a frame
+        assertTrue(channel.accept(new ArcNetProvider.Sequenced(Integer.MIN_VALUE, snapshot)));
+        //other packets are never dropped
+        assertTrue(channel.accept(new ArcNetProvider.Sequenced(Integer.MAX_VALUE, new SendChatMessageCallPacket())));
+
+        channel.reset();
+        Mathf.rand.setSeed(1);
+
+        int[] last = {-1}, received = {0};
+        for(int frame = 0; frame < 1000; frame++){
+            channel.send(new ArcNetProvider.Sequenced(frame, snapshot), 0.1f, 0.2f, packet -> {
+                if(channel.accept(packet)){
+                    assertTrue(packet.frame >= last[0]);
+                    last[0] = packet.frame;
+                    received[0]++;
+                }
+            });
+        }
+
+        assertTrue(channel.dropped > 0);
+        assertTrue(received[0] + channel.dropped < 1000);
+    }
+
+    @Test
+    void unreliableLoopback() throws Exception{
+        int port;
+        try(ServerSocket socket = new ServerSocket(0)){
+            port = socket.getLocalPort();
+        }
+
+        Server server = new Server(32768, 16384, new ArcNetProvider.PacketSerializer());
+        Client client = new Client(8192, 16384, new ArcNetProvider.PacketSerializer());
+        var clientChannel = new ArcNetProvider.UdpChannel();
+        ConcurrentLinkedQueue<Integer> frames = new ConcurrentLinkedQueue<>();
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof ArcNetProvider.Sequenced seq && clientChannel.accept(seq)){
+                    frames.add(seq.frame);
+                }
+            }
+        });
+
+        try{
+            server.bind(port, port);
+            Threads.daemon("Test Server", server::run);
+            Threads.daemon("Test Client", client::run);
+            client.connect(5000, "127.0.0.1", port, port);
+            assertNotNull(client.getRemoteAddressUDP(), "UDP must be registered on loopback");
+
+            Connection connection = server.getConnections()[0];
+            var channel = new ArcNetProvider.UdpChannel();
+            Mathf.rand.setSeed(2);
+
+            EntitySnapshotCallPacket snapshot = new EntitySnapshotCallPacket();
+            snapshot.amount = 1;
+            snapshot.data = new byte[]{1, 2, 3};
+
+            int sent = 300;
+            for(int frame = 0; frame < sent; frame++){
+                snapshot.snapshotID = frame;
+                channel.send(new ArcNetProvider.Sequenced(frame, snapshot), 0.1f, 0.2f, packet -> connection.sendUDP(packet));
+                Thread.sleep(1);
+            }
+
+            //wait for the last datagrams to arrive
+            for(int i = 0; i < 100 && frames.size() + clientChannel.dropped < sent * 0.7f; i++){
+                Thread.sleep(20);
+            }
+
+            assertTrue(clientChannel.dropped > 0, "Late snapshots must be dropped");
+            assertTrue(frames.size() < sent, "Loss must be simulated");
+            assertTrue(frames.size() > sent / 2, "Most snapshots must arrive over UDP: " + frames.size());
+            int last = -1;
+            for(int frame : frames){
+                assertTrue(frame > last, "Snapshots must never be applied out of order");
+                last = frame;
+            }
+        }finally{
+            client.stop();
+            server.stop();
+            client.dispose();
+            server.dispose();
+        }
+    }
+
+    @Test
+    void broadcastEncoding(){
+        var serializer = new ArcNetProvider.PacketSerializer();
+
+        SendChatMessageCallPacket pack = new SendChatMessageCallPacket();
+        pack.message = "a message long enough to be compressed, a message long enough to be compressed";
+
+        ByteBuffer encoded = ByteBuffer.allocate(1000);
+        serializer.write(encoded, pack);
+        encoded.flip();
+        ByteBuffer shared = encoded.asReadOnlyBuffer();
+
+        //every connection gets the same bytes, over TCP or wrapped for UDP
+        for(int i = 0; i < 3; i++){
+            ByteBuffer out = ByteBuffer.allocate(1000);
+            serializer.write(out, i == 2 ? new ArcNetProvider.Sequenced(i, shared) : shared);
+            out.flip();
+
+            Object read = serializer.read(out);
+            if(read instanceof ArcNetProvider.Sequenced seq) read = seq.packet;
+            assertEquals(pack.message, ((SendChatMessageCallPacket)read).message);
+        }
+        assertEquals(0, shared.position());
+    }
+
+    @Test
+    void packetBatching(){
+        Seq<Object> sent = new Seq<>();
+        NetConnection con = new NetConnection("batching"){
+            @Override
+            protected void sendNow(Object object, boolean reliable){
+                if(object instanceof PacketBatch batch){
+                    //the batch is reused, so serialize it right away
+                    ByteBuffer buffer = ByteBuffer.allocate(PacketBatch.maxSize + 16);
+                    var serializer = new ArcNetProvider.PacketSerializer();
+                    serializer.write(buffer, batch);
+                    buffer.flip();
+                    object = serializer.read(buffer);
+                }
+                sent.add(object);
+            }
+
+            @Override
+            public void close(){}
+        };
+        con.batching = true;
+
+        for(int i = 0; i < 3; i++){
+            SendChatMessageCallPacket pack = new SendChatMessageCallPacket();
+            pack.message = "message " + i;
+            con.send(pack, true);
+        }
+
+        //unreliable packets are not batched
+        con.send(new SendChatMessageCallPacket(), false);
+        assertEquals(1, sent.size);
+
+        con.flush();
+        assertEquals(2, sent.size);
+        con.flush();
+        assertEquals(2, sent.size);
+
+        PacketBatch batch = (PacketBatch)sent.get(1);
+        assertEquals(3, batch.count);
+
+        Seq<String> messages = new Seq<>();
+        batch.each(packet -> {
+            packet.handled();
+            messages.add(((SendChatMessageCallPacket)packet).message);
+        });
+        assertEquals(Seq.with("message 0", "message 1", "message 2"), messages);
+    }
+
+    @Test
+    void streamChunks(){
+        byte[] world = new byte[50_000];
+        new Rand(0).nextBytes(world);
+
+        StreamBegin begin = new StreamBegin();
+        begin.total = world.length;
+        begin.type = Net.getPacketId(new WorldStream());
+        var builder = new Streamable.StreamBuilder(begin);
+
+        var serializer = new ArcNetProvider.PacketSerializer();
+        ByteBuffer buffer = ByteBuffer.allocate(16384);
+        StreamChunk chunk = new StreamChunk();
+        chunk.id = begin.id;
+        chunk.data = world;
+
+        //chunks are slices of the same array, of varying size
+        for(int position = 0, size = 1024; position < world.length; position += chunk.length, size = Math.min(size * 2, 1024 * 15)){
+            chunk.offset = position;
+            chunk.length = Math.min(size, world.length - position);
+
+            buffer.clear();
+            serializer.write(buffer, chunk);
+            assertTrue(buffer.position() < 16384);
+            buffer.flip();
+
+            StreamChunk read = (StreamChunk)serializer.read(buffer);
+            assertEquals(chunk.length, read.length);
+            assertFalse(builder.isDone());
+            builder.add(read.data, read.offset, read.length);
+        }
+
+        assertTrue(builder.isDone());
+        var stream = builder.build().stream;
+        byte[] received = new byte[stream.available()];
+        stream.read(received, 0, received.length);
+        assertArrayEquals(world, received);
+    }
+
     @Test
     void writeRules(){
         ByteBuffer buffer = ByteBuffer.allocate(1000);
@@ -206,6 +447,35 @@ public class ApplicationTests{
         assertTrue(res.teamsAllied(Team.sharded, Team.crux));
     }
 
+    @Test
+    void writeObjectives(){
+        ByteBuffer buffer = ByteBuffer.allocate(2000);
+
+        MapObjectives objectives = new MapObjectives();
+        var timer = new MapObjectives.TimerObjective("wait", 120f);
+        var research = new MapObjectives.ResearchObjective(Items.silicon);
+        research.parents.add(timer);
+        objectives.add(timer);
+        objectives.add(research);
+
+        TypeIO.writeObjectives(new Writes(new ByteBufferOutput(buffer)), objectives);
+        TypeIO.writeObjectiveMarker(new Writes(new ByteBufferOutput(buffer)), new MapObjectives.TextMarker("marker", 8f, 16f, 2f, (byte)0));
+        buffer.position(0);
+        Reads read = new Reads(new ByteBufferInput(buffer));
+        MapObjectives res = TypeIO.readObjectives(read);
+        MapObjectives.ObjectiveMarker marker = TypeIO.readObjectiveMarker(read);
+
+        assertEquals(2, res.all.size);
+        assertEquals("wait", ((MapObjectives.TimerObjective)res.all.get(0)).text);
+        assertEquals(Items.silicon, ((MapObjectives.ResearchObjective)res.all.get(1)).content);
+        assertSame(res.all.get(0), res.all.get(1).parents.first());
+
+        assertTrue(marker instanceof MapObjectives.TextMarker);
+        var text = (MapObjectives.TextMarker)marker;
+        assertEquals("marker", text.text);
+        assertEquals(2f, text.fontSize);
+    }
+
     @Test
     void writeRules2(){
         Rules rules = new Rules();
@@ -394,6 +664,172 @@ public class ApplicationTests{
         assertTrue(state.teams.playerCores().size > 0);
     }
 
+    @Test
+    void saveSnapshot() throws Exception{
+        world.loadMap(testMap);
+        UnitTypes.dagger.spawn(Team.sharded, 20f, 30f);
+
+        ReusableByteOutStream snapshot = SaveIO.snapshot();
+
+        //changes after the snapshot must not end up in the save
+        Groups.unit.clear();
+
+        Fi file = saveDirectory.child("snapshot.msav");
+        Thread writer = new Thread(() -> SaveIO.save(file, snapshot.getBytes(), snapshot.size()));
+        writer.start();
+        writer.join();
+
+        resetWorld();
+        SaveIO.load(file);
+
+        assertNotNull(Groups.unit.find(u -> u.type == UnitTypes.dagger), "Snapshotted daggers must persist");
+        assertTrue(state.teams.playerCores().size > 0);
+    }
+
+    @Test
+    void compiledLogic(){
+        String code = """
+        set i 0
+        set sum 0
+        set s "a"
+        op add i i 1
+        op mul sq i i
+        op add sum sum sq
+        op equal same s "a"
+        op idiv inf sum 0
+        op shl bits i 2
+        jump 3 lessThan i 50
+        op emod m sum 7
+        select pick greaterThan m 3 m sum
+        wait 0
+        set @counter 3
+        """;
+
+        LExecutor interpreted = new LExecutor(), compiled = new LExecutor();
+        interpreted.load(LAssembler.assemble(code, false));
+        compiled.load(LAssembler.assemble(code, false));
+
+        assertEquals(interpreted.instructions.length, compiled.compiled.length);
+        assertTrue(Structs.contains(compiled.compiled, i -> i instanceof LCompiler.FusedI));
+
+        //odd budgets make fused runs stop part of the way through
+        for(int step = 0; step < 200; step++){
+            int budget = 1 + step % 7;
+
+            int ran = 0;
+            while(ran < budget){
+                interpreted.runOnce();
+                if(interpreted.yield) break;
+                ran++;
+            }
+
+            assertEquals(ran, compiled.run(budget));
+            assertEquals(interpreted.yield, compiled.yield);
+            interpreted.yield = compiled.yield = false;
+
+            assertEquals(interpreted.counter.numval, compiled.counter.numval);
+            for(int i = 0; i < interpreted.vars.length; i++){
+                LVar a = interpreted.vars[i], b = compiled.vars[i];
+                assertEquals(a.isobj, b.isobj, a.name);
+                assertEquals(a.isobj ? a.objval : a.numval, b.isobj ? b.objval : b.numval, a.name);
+            }
+        }
+    }
+
+    @Test
+    void tickProfiler(){
+        TickProfiler.Histogram histogram = new TickProfiler.Histogram();
+        for(int i = 1; i <= 1000; i++){
+            histogram.record(i * 1000L);
+        }
+
+        //buckets are an eighth of a power of two wide
+        assertEquals(500_000, histogram.percentile(0.5f), 500_000 / 8f);
+        assertEquals(990_000, histogram.percentile(0.99f), 990_000 / 8f);
+        assertEquals(1_000_000, histogram.percentile(1f));
+        assertEquals(1000, histogram.percentile(0f), 1000 / 8f);
+
+        TickProfiler profiler = new TickProfiler();
+        profiler.enabled = true;
+        for(int tick = 0; tick < 10; tick++){
+            profiler.block(Blocks.conveyor).add(100);
+            profiler.block(Blocks.conveyor).add(50);
+            if(tick % 2 == 0) profiler.unit(UnitTypes.dagger).add(10);
+            profiler.endTick();
+        }
+
+        TickProfiler.Section conveyor = profiler.block(Blocks.conveyor);
+        assertEquals(10, conveyor.ticks);
+        assertEquals(20, conveyor.calls);
+        assertEquals(150, conveyor.histogram.max);
+        assertEquals(5, profiler.unit(UnitTypes.dagger).ticks);
+
+        String json = profiler.toJson();
+        assertTrue(json.startsWith("{\"name\":\"tick\"") && json.contains("\"name\":\"conveyor\""), json);
+        assertTrue(profiler.report().contains("conveyor"));
+    }
+
+    @Test
+    void worldDataCache() throws Exception{
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        WorldDataCache cache = new WorldDataCache();
+        Player first = Player.create(), second = Player.create();
+        first.name = "first";
+        second.name = "second";
+
+        for(Player player : new Player[]{first, second, first}){
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            NetworkIO.writeWorld(player, expected);
+
+            byte[] actual = new InflaterInputStream(new ByteArrayInputStream(cache.write(player))).readAllBytes();
+            assertArrayEquals(expected.toByteArray(), actual, "World data of " + player.name);
+        }
+
+        assertEquals(1, cache.misses);
+        assertEquals(2, cache.hits);
+
+        //the map section is sent from the cache itself, without copying it for every player
+        byte[][] firstSlices = cache.writeSlices(first), secondSlices = cache.writeSlices(second);
+        assertSame(firstSlices[1], secondSlices[1]);
+
+        Seq<StreamChunk> chunks = new Seq<>();
+        StreamBegin[] begin = {null};
+        NetConnection con = new NetConnection("stream"){
+            @Override
+            protected void sendNow(Object object, boolean reliable){
+                if(object instanceof StreamBegin b) begin[0] = b;
+                if(object instanceof StreamChunk chunk) chunks.add(chunk);
+            }
+
+            @Override
+            public void close(){}
+        };
+        WorldStream stream = new WorldStream();
+        stream.slices = secondSlices;
+        con.sendStream(stream);
+
+        var builder = new Streamable.StreamBuilder(begin[0]);
+        for(var chunk : chunks){
+            builder.add(chunk.data, chunk.offset, chunk.length);
+        }
+        assertTrue(builder.isDone());
+        assertTrue(chunks.contains(c -> c.data == firstSlices[1]), "Chunks must be slices of the cached map section");
+
+        ByteArrayOutputStream expectedSecond = new ByteArrayOutputStream();
+        NetworkIO.writeWorld(second, expectedSecond);
+        assertArrayEquals(expectedSecond.toByteArray(), new InflaterInputStream(builder.build().stream).readAllBytes());
+
+        //changing a tile must rebuild the map section
+        world.tile(5, 5).setBlock(Blocks.copperWall, Team.sharded);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        NetworkIO.writeWorld(first, expected);
+        assertArrayEquals(expected.toByteArray(), new InflaterInputStream(new ByteArrayInputStream(cache.write(first))).readAllBytes());
+        assertEquals(2, cache.misses);
+    }
+
     void updateBlocks(int times){
         for(Tile tile : world.tiles){
             if(tile.build != null && tile.isCenter()){
@@ -411,6 +847,50 @@ public class ApplicationTests{
         }
     }
 
+    @Test
+    void dormantCrafter(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+        state.rules.limitMapArea = false;
+
+        Tile tile = world.rawTile(2, 2);
+        tile.setBlock(Blocks.graphitePress, Team.sharded);
+        var press = (GenericCrafterBuild)tile.build;
+
+        updateBlocks(5);
+        assertTrue(press.isDormant(), "Crafter without inputs should be dormant");
+
+        //one coal is not enough to craft, so it goes back to sleep
+        press.handleItem(null, Items.coal);
+        assertFalse(press.isDormant());
+        updateBlocks(1);
+        assertTrue(press.isDormant());
+
+        press.handleItem(null, Items.coal);
+        updateBlocks(5);
+        assertFalse(press.isDormant());
+        assertTrue(press.progress > 0f);
+
+        //once out of inputs, it winds down before going dormant
+        press.items.clear();
+        updateBlocks(1);
+        assertFalse(press.isDormant());
+        updateBlocks(200);
+        assertTrue(press.isDormant());
+        assertEquals(0f, press.warmup);
+
+        //an overdrive projector keeps refreshing its boost while the crafter is dormant
+        press.doze(WakeFlag.all, 1000f);
+        for(int i = 0; i < 3; i++){
+            press.applyBoost(2.5f, 100f);
+            updateBlocks(60);
+        }
+        press.applyBoost(2.5f, 100f);
+        assertTrue(press.isDormant());
+        press.wakeUp();
+        assertEquals(2.5f, press.timeScale(), "Boost refreshed while dormant must survive waking up");
+    }
+
     @Test
     void liquidOutput(){
         world.loadMap(testMap);
@@ -745,6 +1225,833 @@ public class ApplicationTests{
         assertEquals(8, edges2.length);
     }
 
+    @Test
+    void fogVisionEquivalence(){
+        int width = 64, height = 48;
+        Rand rand = new Rand(7);
+
+        Tiles tiles = world.resize(width, height);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+            byte data = HeightLayerData.compose(1 + rand.random(3), rand.chance(0.15));
+            tile.floorData = CliffLayerData.withCliff(data, rand.chance(0.2) ? rand.random(CliffLayerData.maxType) : CliffLayerData.none);
+            if(rand.chance(0.08)){
+                tile.setBlock(Blocks.stoneWall);
+            }
+        }
+        world.endMapLoad();
+
+        FogOcclusion occlusion = new FogOcclusion();
+        occlusion.rebuild();
+
+        Bits expected = new Bits(width * height), actual = new Bits(width * height), cached = new Bits(width * height);
+
+        for(int i = 0; i < 200; i++){
+            int x = rand.random(-2, width + 1), y = rand.random(-2, height + 1);
+            int radius = rand.random(1, 24), viewerHeight = 1 + rand.random(3);
+            boolean ignoreHeight = rand.chance(0.1);
+
+            expected.clear();
+            actual.clear();
+            cached.clear();
+            referenceFogCircle(expected, x, y, radius, viewerHeight, ignoreHeight, width, height);
+            FogVision.circle(actual, null, x, y, radius, viewerHeight, ignoreHeight, width, height);
+            FogVision.circle(cached, occlusion, x, y, radius, viewerHeight, ignoreHeight, width, height);
+
+            for(int j = 0; j < width * height; j++){
+                if(expected.get(j) != actual.get(j) || expected.get(j) != cached.get(j)){
+                    fail("Fog mismatch at " + (j % width) + ", " + (j / width) + " for viewer " + x + ", " + y + " radius=" + radius + " height=" + viewerHeight);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fogIncrementalEquivalence() throws InterruptedException{
+        int width = 64, height = 48;
+        Rand rand = new Rand(13);
+
+        state.rules.fog = true;
+        state.rules.staticFog = false;
+        state.rules.waves = false;
+
+        Tiles tiles = world.resize(width, height);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+            tile.floorData = HeightLayerData.compose(1 + rand.random(3), rand.chance(0.15));
+            if(rand.chance(0.08)){
+                tile.setBlock(Blocks.stoneWall);
+            }
+        }
+        world.endMapLoad();
+        state.set(State.playing);
+
+        for(int i = 0; i < 20; i++){
+            UnitTypes.dagger.spawn(Team.sharded, rand.random(width * tilesize - 1f), rand.random(height * tilesize - 1f));
+        }
+
+        Bits expected = new Bits(width * height);
+
+        for(int frame = 0; frame < 30; frame++){
+            //viewers move, die and appear between dynamic updates
+            for(int i = 0; i < 5; i++){
+                Unit unit = Groups.unit.index(rand.random(Groups.unit.size() - 1));
+                unit.set(Mathf.clamp(unit.x + rand.range(tilesize * 6f), 0f, width * tilesize - 1f), Mathf.clamp(unit.y + rand.range(tilesize * 6f), 0f, height * tilesize - 1f));
+            }
+            if(frame % 3 == 0){
+                Groups.unit.index(rand.random(Groups.unit.size() - 1)).remove();
+                UnitTypes.dagger.spawn(Team.sharded, rand.random(width * tilesize - 1f), rand.random(height * tilesize - 1f));
+            }
+            if(frame == 15){
+                fogControl.invalidateDynamic();
+            }
+
+            state.teams.updateTeamStats();
+            //let the dynamic update interval pass
+            Thread.sleep(50);
+            fogControl.update();
+
+            //the union of all viewers, traced from scratch
+            expected.clear();
+            for(Unit unit : Team.sharded.data().units){
+                int viewerHeight = HeightLayerData.edgeLayer(unit.x, unit.y, unit.hitSize / 2f);
+                FogVision.circle(expected, null, unit.tileX(), unit.tileY(), (int)unit.type.fogRadius + 1, viewerHeight, false, width, height);
+            }
+
+            //dynamic fog is traced on a worker; wait for it to catch up
+            int mismatch = -1;
+            for(int wait = 0; wait < 200; wait++){
+                mismatch = -1;
+                for(int j = 0; j < width * height; j++){
+                    if(expected.get(j) != fogControl.isVisibleTile(Team.sharded, j % width, j / width)){
+                        mismatch = j;
+                        break;
+                    }
+                }
+                if(mismatch == -1) break;
+                Thread.sleep(10);
+            }
+
+            if(mismatch != -1){
+                fail("Incremental fog mismatch at " + (mismatch % width) + ", " + (mismatch / width) + " on frame " + frame);
+            }
+        }
+    }
+
+    @Test
+    void sharedTeamVisibility() throws IOException{
+        Rand rand = new Rand(17);
+        Seq<SnapshotConnection> connections = syncTestWorld(rand, Team.sharded, Team.sharded, Team.crux);
+
+        Net lastNet = net;
+        net = stubServerNet(connections);
+        try{
+            int hiddenTotal = 0;
+
+            for(int pass = 0; pass < 4; pass++){
+                moveSyncUnits(rand);
+                runSyncPass(connections);
+
+                //the per-team hidden set must match asking every entity about every player
+                for(SnapshotConnection con : connections){
+                    for(Syncc entity : Groups.sync){
+                        boolean hidden = entity.isSyncHidden(con.player);
+                        assertEquals(hidden, con.hidden.contains(entity.id()), "Entity " + entity + " hidden from " + con.player.name + " on pass " + pass);
+                        assertEquals(!hidden, con.payloads.containsKey(entity.id()), "Entity " + entity + " sent to " + con.player.name + " on pass " + pass);
+                    }
+                    hiddenTotal += con.hidden.size;
+                }
+            }
+
+            assertTrue(hiddenTotal > 0, "Fog must hide some units");
+        }finally{
+            net = lastNet;
+        }
+    }
+
+    @Test
+    void syncPayloadsOncePerPass() throws IOException{
+        Rand rand = new Rand(19);
+        Seq<SnapshotConnection> connections = syncTestWorld(rand, Team.sharded, Team.sharded, Team.crux);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Writes writes = new Writes(new DataOutputStream(expected));
+
+        Net lastNet = net;
+        net = stubServerNet(connections);
+        try{
+            for(int pass = 0; pass < 4; pass++){
+                moveSyncUnits(rand);
+                runSyncPass(connections);
+
+                //payloads shared by all snapshots of a pass must equal serializing the entity for each player
+                for(SnapshotConnection con : connections){
+                    assertTrue(con.payloads.size > 0);
+
+                    for(var entry : con.payloads){
+                        Syncc entity = Groups.sync.getByID(entry.key);
+                        expected.reset();
+                        entity.beforeWrite();
+                        entity.writeSync(writes);
+                        assertArrayEquals(expected.toByteArray(), entry.value, "Payload of " + entity + " sent to " + con.player.name + " on pass " + pass);
+                    }
+                }
+            }
+        }finally{
+            net = lastNet;
+        }
+    }
+
+    @Test
+    void parallelClusterRebuilds(){
+        int size = 96, clusterSize = ControlPathfinderAccess.clusterSize(), clusters = size / clusterSize;
+        Rand rand = new Rand(23);
+
+        Tiles tiles = world.resize(size, size);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+            if(rand.chance(0.25)){
+                tile.setBlock(Blocks.stoneWall);
+            }
+        }
+        world.endMapLoad();
+
+        int team = Team.sharded.id, cost = ControlPathfinder.costTypes.indexOf(ControlPathfinder.costGround);
+        ControlPathfinder parallel = new ControlPathfinder(), serial = new ControlPathfinder();
+        ControlPathfinderAccess.createClusters(parallel, team, cost);
+        ControlPathfinderAccess.createClusters(serial, team, cost);
+
+        for(int round = 0; round < 6; round++){
+            IntSeq complete = new IntSeq(), inner = new IntSeq();
+
+            //walls change; the clusters around them get their portals rebuilt, a few others only their inner edges
+            for(int i = 0; i < 30; i++){
+                int x = rand.random(size - 1), y = rand.random(size - 1);
+                Tile tile = world.tile(x, y);
+                tile.setBlock(tile.block() == Blocks.air ? Blocks.stoneWall : Blocks.air);
+
+                int cx = x / clusterSize, cy = y / clusterSize;
+                for(Point2 p : Geometry.d4c){
+                    int ox = cx + p.x, oy = cy + p.y;
+                    if(ox >= 0 && oy >= 0 && ox < clusters && oy < clusters && !complete.contains(ox + oy * clusters)){
+                        complete.add(ox + oy * clusters);
+                    }
+                }
+            }
+            for(int i = 0; i < 10; i++){
+                int index = rand.random(clusters * clusters - 1);
+                if(!inner.contains(index)) inner.add(index);
+            }
+
+            ControlPathfinderAccess.rebuildParallel(parallel, complete, inner);
+            ControlPathfinderAccess.rebuildSerial(serial, team, cost, complete, inner);
+
+            assertEquals(ControlPathfinderAccess.dump(serial, team, cost), ControlPathfinderAccess.dump(parallel, team, cost), "Clusters after round " + round);
+        }
+    }
+
+    @Test
+    void avoidanceDirtyClearing(){
+        int size = 100;
+        Rand rand = new Rand(29);
+
+        state.rules.waves = true;
+        state.rules.waveTeam = Team.crux;
+        world.resize(size, size).fill();
+        state.set(State.playing);
+
+        //enough stamps for the stripes to run in parallel
+        for(int i = 0; i < 600; i++){
+            UnitTypes.dagger.spawn(Team.crux, rand.random(size * tilesize - 1f), rand.random(size * tilesize - 1f));
+        }
+
+        AvoidanceProcess process = new AvoidanceProcess();
+        process.init();
+        process.getAvoidance();
+
+        int[] expected = null;
+
+        for(int frame = 0; frame < 20; frame++){
+            //units move, some a long way, and the crowd thins out; everything they left behind must be cleared
+            for(Unit unit : Groups.unit){
+                float range = rand.chance(0.1) ? tilesize * 30f : tilesize * 2f;
+                unit.set(Mathf.clamp(unit.x + rand.range(range), 0f, size * tilesize - 1f), Mathf.clamp(unit.y + rand.range(range), 0f, size * tilesize - 1f));
+            }
+            for(int i = 0; i < 20; i++){
+                Groups.unit.index(rand.random(Groups.unit.size() - 1)).remove();
+            }
+            //unbounded units can end up far outside the world, where their stamps are empty
+            for(int i = 0; i < 5; i++){
+                Unit unit = Groups.unit.index(rand.random(Groups.unit.size() - 1));
+                unit.set(rand.chance(0.5) ? -20f * tilesize : (size + 20f) * tilesize, rand.random(-20f, size + 20f) * tilesize);
+            }
+
+            state.teams.updateTeamStats();
+            process.begin();
+
+            //the buffer from the last frame must equal clearing everything and stamping all units again
+            if(expected != null){
+                assertArrayEquals(expected, process.getAvoidance(), "Avoidance after frame " + (frame - 1));
+            }
+
+            expected = new int[size * size];
+            for(Unit unit : Team.crux.data().units){
+                if(unit.collisionLayer() != PhysicsProcess.layerGround) continue;
+
+                int rx = unit.tileX(), ry = unit.tileY();
+                float rad = unit.hitSize * unitCollisionRadiusScale / tilesize * 2f;
+                int r = Math.max(1, Mathf.ceil(rad));
+                for(int y = Math.max(ry - r, 0); y <= Math.min(ry + r, size - 1); y++){
+                    for(int x = Math.max(rx - r, 0); x <= Math.min(rx + r, size - 1); x++){
+                        if((x - rx) * (x - rx) + (y - ry) * (y - ry) <= rad * rad){
+                            expected[x + y * size] = Math.max(expected[x + y * size], Integer.MAX_VALUE - unit.id);
+                        }
+                    }
+                }
+            }
+
+            process.process();
+        }
+    }
+
+    @Test
+    void asyncProcessDependencies(){
+        state.set(State.playing);
+        Seq<AsyncProcess> lastProcesses = asyncCore.processes.copy();
+
+        OrderedProcess physics = new OrderedProcess(), avoidance = new OrderedProcess(), fog = new OrderedProcess(),
+            independent = new OrderedProcess(), disabled = new OrderedProcess(), afterDisabled = new OrderedProcess();
+        avoidance.requires.add(physics);
+        fog.requires.add(avoidance);
+        afterDisabled.requires.add(disabled);
+        disabled.enabled = false;
+
+        //each stage consumes the output of the one before it
+        int[] values = new int[3];
+        physics.work = () -> values[0]++;
+        avoidance.work = () -> values[1] = values[0] * 2;
+        fog.work = () -> values[2] = values[1] + 1;
+
+        try{
+            //listed out of order, so scheduling has to follow the dependencies rather than the list
+            asyncCore.processes.clear().addAll(fog, independent, afterDisabled, avoidance, disabled, physics);
+
+            for(int frame = 1; frame <= 10; frame++){
+                asyncCore.begin();
+                asyncCore.end();
+
+                //same results as running the chain serially
+                assertEquals(frame, values[0]);
+                assertEquals(frame * 2, values[1]);
+                assertEquals(frame * 2 + 1, values[2]);
+
+                assertTrue(avoidance.started > physics.finished, "avoidance must start after physics");
+                assertTrue(fog.started > avoidance.finished, "fog must start after avoidance");
+                assertTrue(independent.finished != -1);
+                assertTrue(afterDisabled.finished != -1, "dependencies that do not process are ignored");
+                assertEquals(-1, disabled.started);
+            }
+
+            OrderedProcess first = new OrderedProcess(), second = new OrderedProcess(), other = new OrderedProcess();
+            first.requires.add(second);
+            second.requires.add(first);
+            asyncCore.processes.clear().addAll(first, second, other);
+
+            assertThrows(IllegalStateException.class, asyncCore::begin);
+            //work that was already scheduled still finishes before the error is reported
+            assertTrue(other.finished != -1);
+            assertEquals(-1, first.started);
+            assertEquals(-1, second.started);
+        }finally{
+            asyncCore.processes.clear().addAll(lastProcesses);
+        }
+    }
+
+    @Test
+    void astarJumpPoints(){
+        int width = 64, height = 48;
+        Rand rand = new Rand(11);
+
+        Tiles tiles = world.resize(width, height);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+            if(rand.chance(0.25)){
+                tile.setBlock(Blocks.stoneWall);
+            }
+        }
+        world.endMapLoad();
+
+        for(int i = 0; i < 100; i++){
+            Tile start = tiles.getn(rand.random(width - 1), rand.random(height - 1)), end = tiles.getn(rand.random(width - 1), rand.random(height - 1));
+            if(start.solid() || end.solid()) continue;
+
+            //breadth-first search for the shortest distance
+            IntIntMap distances = new IntIntMap();
+            IntQueue queue = new IntQueue();
+            distances.put(start.array(), 0);
+            queue.addLast(start.array());
+            while(!queue.isEmpty()){
+                int pos = queue.removeFirst();
+                for(Point2 p : Geometry.d4){
+                    Tile other = world.tile(pos % width + p.x, pos / width + p.y);
+                    if(other != null && !other.solid() && !distances.containsKey(other.array())){
+                        distances.put(other.array(), distances.get(pos) + 1);
+                        queue.addLast(other.array());
+                    }
+                }
+            }
+
+            int expected = distances.get(end.array(), -1);
+
+            Seq<Tile> plain = Astar.pathfind(start.x, start.y, end.x, end.y, t -> 1, Astar.manhattan, t -> !t.solid());
+            assertEquals(expected == -1, plain.isEmpty() && start != end, "Plain A* reachability from " + start + " to " + end);
+
+            Seq<Tile> path = Astar.pathfind(start.x, start.y, end.x, end.y, t -> 1, Astar.manhattan, t -> !t.solid(), false, true);
+            if(expected == -1){
+                assertTrue(path.isEmpty(), "Jump point path found to unreachable tile " + end);
+                continue;
+            }
+
+            assertEquals(expected, path.size, "Jump point path length from " + start + " to " + end);
+            Tile last = start;
+            for(Tile tile : path){
+                assertFalse(tile.solid());
+                assertEquals(1, Math.abs(tile.x - last.x) + Math.abs(tile.y - last.y), "Jump point path is not continuous");
+                last = tile;
+            }
+            if(expected > 0) assertEquals(end, last);
+        }
+    }
+
+    @Test
+    void harvestCrystalInSaturatedQuadrant(){
+        Tiles tiles = world.resize(40, 40);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+        }
+        tiles.getn(2, 2).setBlock(Blocks.graphiticWall);
+        world.endMapLoad();
+
+        Tile saturated = tiles.getn(2, 2);
+        harvestIndex.setSaturation(saturated, 1);
+        assertNull(harvestIndex.findCrystal(saturated.worldx(), saturated.worldy(), 10, true, 0));
+
+        //a crystal added later starts without harvesters, even though its quadrant is saturated
+        Tile added = tiles.getn(5, 5);
+        added.setBlock(Blocks.graphiticWall);
+        assertEquals(added, harvestIndex.findCrystal(saturated.worldx(), saturated.worldy(), 10, true, 0));
+        assertEquals(added, harvestIndex.findCrystal(saturated.worldx(), saturated.worldy(), 10, true, Integer.MAX_VALUE));
+
+        added.setBlock(Blocks.air);
+        assertNull(harvestIndex.findCrystal(saturated.worldx(), saturated.worldy(), 10, true, 0));
+        harvestIndex.setSaturation(saturated, 0);
+        assertEquals(saturated, harvestIndex.findCrystal(saturated.worldx(), saturated.worldy(), 10, true, 0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2000, 5000, 10000})
+    void unitGridBench(int amount){
+        int size = 300;
+        Rand rand = new Rand(amount);
+
+        world.resize(size, size).fill();
+        state.set(State.playing);
+
+        Team[] teams = {Team.sharded, Team.crux};
+        for(int i = 0; i < amount; i++){
+            UnitTypes.dagger.spawn(teams[i % 2], rand.random(size * tilesize), rand.random(size * tilesize));
+        }
+
+        Seq<Unit> found = new Seq<>();
+        Rect rect = new Rect(), hitbox = new Rect();
+        long gridTime = 0, rebuildTime = 0;
+        int frames = 60;
+
+        for(int frame = 0; frame < frames; frame++){
+            //a tenth of all units moves each frame, and a few die
+            for(int i = 0; i < amount / 10; i++){
+                Unit unit = Groups.unit.index(rand.random(Groups.unit.size() - 1));
+                unit.set(Mathf.clamp(unit.x + rand.range(tilesize * 4f), 0f, size * tilesize), Mathf.clamp(unit.y + rand.range(tilesize * 4f), 0f, size * tilesize));
+            }
+            for(int i = 0; i < 5; i++){
+                Groups.unit.index(rand.random(Groups.unit.size() - 1)).remove();
+            }
+
+            long start = Time.nanos();
+            state.teams.updateTeamStats();
+            gridTime += Time.timeSinceNanos(start);
+
+            //what the quadtree rebuild used to cost
+            QuadTree<Unit> tree = new QuadTree<>(world.getQuadBounds(new Rect()));
+            start = Time.nanos();
+            for(Unit unit : Groups.unit){
+                if(unit.team == Team.sharded) tree.insert(unit);
+            }
+            rebuildTime += Time.timeSinceNanos(start);
+
+            for(int q = 0; q < 10; q++){
+                Team team = teams[q % 2];
+                rect.setCentered(rand.random(size * tilesize), rand.random(size * tilesize), rand.random(10f, 300f));
+
+                found.clear();
+                team.data().tree().intersect(rect, found);
+
+                int expected = Groups.unit.count(u -> u.team == team && u.hitbox(hitbox).overlaps(rect));
+                assertEquals(expected, found.size, "Units found in " + rect);
+                assertTrue(found.allMatch(u -> u.team == team && u.isAdded()));
+                assertEquals(expected > 0, team.data().tree().any(rect.x, rect.y, rect.width, rect.height));
+            }
+
+            assertEquals(Groups.unit.count(u -> u.team == Team.sharded), Team.sharded.data().tree().size());
+        }
+
+        Log.info("@ units: @ms per frame to update unit grids, @ms per frame to rebuild one team's quadtree", amount, gridTime / frames / 1000000f, rebuildTime / frames / 1000000f);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {500, 2000, 5000})
+    void physicsGridBench(int amount){
+        Rect bounds = new Rect(0, 0, 300 * tilesize, 300 * tilesize);
+        //deathballs: most bodies are packed into a few clusters
+        PhysicsBody[] initial = physicsBodies(amount, bounds, new Rand(amount));
+
+        PhysicsWorld world = new PhysicsWorld(bounds), repeat = new PhysicsWorld(bounds);
+        PhysicsBody[] bodies = copyBodies(initial), repeated = copyBodies(initial), reference = copyBodies(initial);
+        for(var body : bodies) world.add(body);
+        for(var body : repeated) repeat.add(body);
+
+        int steps = 20;
+        long gridTime = 0, referenceTime = 0;
+
+        for(int i = 0; i < steps; i++){
+            long start = Time.nanos();
+            world.update();
+            gridTime += Time.timeSinceNanos(start);
+
+            repeat.update();
+
+            start = Time.nanos();
+            referencePhysicsUpdate(reference, bounds);
+            referenceTime += Time.timeSinceNanos(start);
+        }
+
+        for(int i = 0; i < amount; i++){
+            assertEquals(bodies[i].x, repeated[i].x, "Physics must be deterministic");
+            assertEquals(bodies[i].y, repeated[i].y, "Physics must be deterministic");
+        }
+
+        float initialOverlap = physicsOverlap(initial), gridOverlap = physicsOverlap(bodies), referenceOverlap = physicsOverlap(reference);
+        assertTrue(gridOverlap < initialOverlap, "Collisions must be resolved");
+        //resolution order differs, so positions do not match exactly; collisions must be resolved at least as well within a tolerance
+        assertTrue(gridOverlap <= referenceOverlap * 1.15f + 1f, "Remaining overlap " + gridOverlap + " compared to quadtree physics " + referenceOverlap);
+
+        Log.info("@ bodies: @ms per step with the grid, @ms per step with quadtrees. Overlap @ -> @ (quadtrees: @)",
+            amount, gridTime / steps / 1000000f, referenceTime / steps / 1000000f, initialOverlap, gridOverlap, referenceOverlap);
+    }
+
+    static PhysicsBody[] physicsBodies(int amount, Rect bounds, Rand rand){
+        PhysicsBody[] bodies = new PhysicsBody[amount];
+        for(int i = 0; i < amount; i++){
+            PhysicsBody body = bodies[i] = new PhysicsBody();
+            int cluster = i % 5;
+            if(cluster < 3){
+                body.x = bounds.width * (0.2f + cluster * 0.3f) + rand.range(amount / 20f + 40f);
+                body.y = bounds.height / 2f + rand.range(amount / 20f + 40f);
+            }else{
+                body.x = rand.random(bounds.width);
+                body.y = rand.random(bounds.height);
+            }
+            body.radius = (i % 7 == 0 ? 16f : 8f) * unitCollisionRadiusScale;
+            body.mass = body.radius * body.radius;
+            body.layer = i % 11 == 0 ? PhysicsProcess.layerLegs : PhysicsProcess.layerGround;
+        }
+        return bodies;
+    }
+
+    static PhysicsBody[] copyBodies(PhysicsBody[] bodies){
+        PhysicsBody[] out = new PhysicsBody[bodies.length];
+        for(int i = 0; i < bodies.length; i++){
+            PhysicsBody body = out[i] = new PhysicsBody();
+            body.x = bodies[i].x;
+            body.y = bodies[i].y;
+            body.radius = bodies[i].radius;
+            body.mass = bodies[i].mass;
+            body.layer = bodies[i].layer;
+        }
+        return out;
+    }
+
+    /** @return the sum of the overlap depth of every pair of bodies on the same layer. */
+    static float physicsOverlap(PhysicsBody[] bodies){
+        float total = 0f;
+        for(int i = 0; i < bodies.length; i++){
+            for(int j = i + 1; j < bodies.length; j++){
+                PhysicsBody a = bodies[i], b = bodies[j];
+                if(a.layer != b.layer) continue;
+                total += Math.max(a.radius + b.radius - Mathf.dst(a.x, a.y, b.x, b.y), 0f);
+            }
+        }
+        return total;
+    }
+
+    /** One step of the quadtree broadphase that physics used to run on a single thread. */
+    static void referencePhysicsUpdate(PhysicsBody[] bodies, Rect bounds){
+        QuadTree<PhysicsBody>[] trees = new QuadTree[PhysicsProcess.layers];
+        for(int i = 0; i < trees.length; i++){
+            trees[i] = new QuadTree<>(new Rect(bounds));
+        }
+        for(var body : bodies){
+            body.collided = false;
+            trees[body.layer].insert(body);
+        }
+
+        Seq<PhysicsBody> seq = new Seq<>(PhysicsBody.class);
+        Rect rect = new Rect();
+        Vec2 vec = new Vec2();
+        for(var body : bodies){
+            body.hitbox(rect);
+            seq.clear();
+            trees[body.layer].intersect(rect, seq);
+
+            for(var other : seq){
+                if(other == body || other.collided) continue;
+
+                float rs = body.radius + other.radius;
+                float dst = Mathf.dst(body.x, body.y, other.x, other.y);
+                if(dst < rs){
+                    vec.set(body.x - other.x, body.y - other.y).setLength(rs - dst);
+                    float ms = body.mass + other.mass;
+                    float scl1 = 1.25f * Math.max(1f, body.pushScale), scl2 = 1.25f * Math.max(1f, other.pushScale);
+                    body.x += vec.x * other.mass / ms / scl1;
+                    body.y += vec.y * other.mass / ms / scl1;
+                    other.x -= vec.x * body.mass / ms / scl2;
+                    other.y -= vec.y * body.mass / ms / scl2;
+                }
+            }
+            body.collided = true;
+        }
+    }
+
+    /** Per-cell ray casting over the midpoint circle, as fog coverage was originally computed. */
+    static void referenceFogCircle(Bits arr, int x, int y, int radius, int viewerHeight, boolean ignoreHeight, int width, int height){
+        int f = 1 - radius;
+        int ddFx = 1, ddFy = -2 * radius;
+        int px = 0, py = radius;
+
+        referenceFogLine(arr, x, y, x, x, y + radius, viewerHeight, ignoreHeight, width, height);
+        referenceFogLine(arr, x, y, x, x, y - radius, viewerHeight, ignoreHeight, width, height);
+        referenceFogLine(arr, x, y, x - radius, x + radius, y, viewerHeight, ignoreHeight, width, height);
+
+        while(px < py){
+            if(f >= 0){
+                py--;
+                ddFy += 2;
+                f += ddFy;
+            }
+            px++;
+            ddFx += 2;
+            f += ddFx;
+            referenceFogLine(arr, x, y, x - px, x + px, y + py, viewerHeight, ignoreHeight, width, height);
+            referenceFogLine(arr, x, y, x - px, x + px, y - py, viewerHeight, ignoreHeight, width, height);
+            referenceFogLine(arr, x, y, x - py, x + py, y + px, viewerHeight, ignoreHeight, width, height);
+            referenceFogLine(arr, x, y, x - py, x + py, y - px, viewerHeight, ignoreHeight, width, height);
+        }
+    }
+
+    static void referenceFogLine(Bits arr, int sourceX, int sourceY, int x1, int x2, int y, int viewerHeight, boolean ignoreHeight, int width, int height){
+        if(y < 0 || y >= height) return;
+        x1 = Math.max(x1, 0);
+        x2 = Math.min(x2, width - 1);
+
+        for(int x = x1; x <= x2; x++){
+            if(ignoreHeight){
+                arr.set(x + y * width);
+                continue;
+            }
+            if(!FogControl.hasVisionPath(sourceX, sourceY, x, y, viewerHeight)) continue;
+            if(HeightLayerData.fogLayer(world.tile(x, y)) <= viewerHeight){
+                arr.set(x + y * width);
+            }
+        }
+    }
+
+    /** Loads an open, fogged world where two teams with cores have units scattered around, and adds a player on a stub connection for each team given. */
+    Seq<SnapshotConnection> syncTestWorld(Rand rand, Team... playerTeams){
+        int size = 80;
+
+        state.rules.fog = true;
+        state.rules.staticFog = false;
+        state.rules.waves = false;
+
+        Tiles tiles = world.resize(size, size);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor(Blocks.stone.asFloor());
+        }
+        world.endMapLoad();
+
+        world.tile(4, 4).setBlock(Blocks.coreShard, Team.sharded);
+        world.tile(size - 5, size - 5).setBlock(Blocks.coreShard, Team.crux);
+        state.set(State.playing);
+
+        for(int i = 0; i < 40; i++){
+            UnitTypes.dagger.spawn(i % 2 == 0 ? Team.sharded : Team.crux, rand.random(size * tilesize - 1f), rand.random(size * tilesize - 1f));
+        }
+
+        //the first fog update after loading is applied right away, and stays fixed for the rest of the test
+        state.teams.updateTeamStats();
+        fogControl.update();
+
+        Seq<SnapshotConnection> connections = new Seq<>();
+        for(int i = 0; i < playerTeams.length; i++){
+            SnapshotConnection con = new SnapshotConnection("player" + i);
+            Player player = Player.create();
+            player.name = "player" + i;
+            player.team(playerTeams[i]);
+            player.con = con;
+            con.player = player;
+            player.add();
+            connections.add(con);
+        }
+        return connections;
+    }
+
+    static void moveSyncUnits(Rand rand){
+        float size = world.width() * tilesize - 1f;
+        for(Unit unit : Groups.unit){
+            unit.set(Mathf.clamp(unit.x + rand.range(tilesize * 6f), 0f, size), Mathf.clamp(unit.y + rand.range(tilesize * 6f), 0f, size));
+        }
+    }
+
+    /** Runs a server update, which sends an entity snapshot to each connection. */
+    static void runSyncPass(Seq<SnapshotConnection> connections){
+        for(SnapshotConnection con : connections){
+            con.payloads.clear();
+            con.hidden.clear();
+            con.syncTime = 0;
+        }
+        netServer.update();
+    }
+
+    /** @return a hosting Net that does not open any sockets. Packets only reach the connections given. */
+    static Net stubServerNet(Seq<? extends NetConnection> connections) throws IOException{
+        Net result = new Net(new Net.NetProvider(){
+            @Override
+            public void connectClient(String ip, int port, Runnable success){}
+
+            @Override
+            public void sendClient(Object object, boolean reliable){}
+
+            @Override
+            public void disconnectClient(){}
+
+            @Override
+            public void discoverServers(Cons<Host> callback, Runnable done){
+                done.run();
+            }
+
+            @Override
+            public void pingHost(String address, int port, Cons<Host> valid, Cons<Exception> failed){}
+
+            @Override
+            public void hostServer(int port){}
+
+            @Override
+            public Iterable<? extends NetConnection> getConnections(){
+                return connections;
+            }
+
+            @Override
+            public void closeServer(){}
+        });
+        result.host(0);
+        return result;
+    }
+
+    /** A connection that decodes the entity snapshots sent to it. */
+    static class SnapshotConnection extends NetConnection{
+        /** Full sync payloads by entity ID, and the IDs reported as hidden. */
+        final IntMap<byte[]> payloads = new IntMap<>();
+        final IntSet hidden = new IntSet();
+
+        SnapshotConnection(String address){
+            super(address);
+            uuid = usid = address;
+            hasConnected = true;
+        }
+
+        @Override
+        protected void sendNow(Object object, boolean reliable){
+            if(object instanceof EntitySnapshotCallPacket packet){
+                try{
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.data));
+                    for(int i = 0; i < packet.amount; i++){
+                        int id = in.readInt();
+                        in.readByte();
+                        //nothing was acknowledged, so there is no baseline to encode against
+                        assertEquals(SnapshotHistory.recordFull, in.readByte());
+                        byte[] payload = new byte[in.readInt()];
+                        in.readFully(payload);
+                        payloads.put(id, payload);
+                    }
+                }catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            }else if(object instanceof HiddenSnapshotCallPacket packet){
+                for(int i = 0; i < packet.ids.size; i++){
+                    hidden.add(packet.ids.items[i]);
+                }
+            }
+        }
+
+        @Override
+        public void close(){}
+    }
+
+    /** An async process that records when it ran, on a clock shared by all of them. */
+    static class OrderedProcess implements AsyncProcess{
+        static final AtomicInteger clock = new AtomicInteger();
+
+        final Seq<AsyncProcess> requires = new Seq<>();
+        boolean enabled = true;
+        Runnable work = () -> {};
+        volatile int started = -1, finished = -1;
+
+        @Override
+        public void begin(){
+            started = finished = -1;
+        }
+
+        @Override
+        public void process(){
+            started = clock.incrementAndGet();
+            work.run();
+            //long enough for processes that are not ordered to overlap
+            Threads.sleep(2);
+            finished = clock.incrementAndGet();
+        }
+
+        @Override
+        public boolean shouldProcess(){
+            return enabled;
+        }
+
+        @Override
+        public boolean dependsOn(AsyncProcess other){
+            return requires.contains(other, true);
+        }
+    }
+
     @Test
     void buildingOverlap(){
         initBuilding();
@@ -913,6 +2220,72 @@ public class ApplicationTests{
         checkPayloads();
     }
 
+    @Test
+    void parallelFilters(){
+        Seq<GenerateFilter> filters = Seq.with(
+            new NoiseFilter(),
+            new ScatterFilter(){{ block = Blocks.boulder; chance = 0.1f; }},
+            new DistortFilter(),
+            new MedianFilter(),
+            new OreFilter(),
+            new OreMedianFilter(),
+            new BlendFilter()
+        );
+        for(int i = 0; i < filters.size; i++){
+            filters.get(i).seed = i * 31;
+        }
+
+        //scatter rolls must match the shared seeded generator used before filters ran in parallel
+        var scatter = new ScatterFilter(){
+            { seed = 1234; }
+
+            void check(GenerateInput in){
+                assertEquals(chance(in.x, in.y), chance(in), "Scatter chance at " + in.x + ", " + in.y);
+            }
+        };
+        GenerateInput in = new GenerateInput();
+        for(int x = -5; x < 200; x += 3){
+            for(int y = -5; y < 200; y += 7){
+                in.set(x, y, Blocks.air, Blocks.stone, Blocks.air, 0);
+                scatter.check(in);
+            }
+        }
+
+        long[] serial = applyFilters(filters, false), parallel = applyFilters(filters, true);
+        for(int i = 0; i < serial.length; i++){
+            assertEquals(serial[i], parallel[i], "Tile " + i + " differs");
+        }
+    }
+
+    long[] applyFilters(Seq<GenerateFilter> filters, boolean parallel){
+        Tiles tiles = world.resize(150, 100);
+        world.beginMapLoad();
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
+                tiles.set(x, y, new Tile(x, y, (x * 7 + y * 3) % 5 == 0 ? Blocks.sand : Blocks.stone, Blocks.air, (x + y) % 11 == 0 ? Blocks.stoneWall : Blocks.air));
+            }
+        }
+
+        GenerateFilter.parallel = parallel;
+        try{
+            GenerateInput input = new GenerateInput();
+            for(var filter : filters){
+                input.begin(tiles.width, tiles.height, tiles::getn);
+                filter.apply(tiles, input);
+            }
+        }finally{
+            GenerateFilter.parallel = true;
+        }
+        world.endMapLoad();
+
+        long[] result = new long[tiles.width * tiles.height];
+        for(int i = 0; i < result.length; i++){
+            Tile tile = tiles.geti(i);
+            result[i] = PackTile.get(tile.blockID(), tile.floorID(), tile.overlayID());
+        }
+        return result;
+    }
+
     @TestFactory
     DynamicTest[] testSectorValidity(){
         Seq<DynamicTest> out = new Seq<>();
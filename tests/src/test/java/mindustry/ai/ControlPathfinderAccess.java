@@ -0,0 +1,69 @@
+package mindustry.ai;
+
+import arc.struct.*;
+import mindustry.ai.ControlPathfinder.*;
+
+/** Gives tests outside this package access to the cluster graph of a {@link ControlPathfinder}. */
+public class ControlPathfinderAccess{
+
+    public static int clusterSize(){
+        return ControlPathfinder.clusterSize;
+    }
+
+    /** Creates every cluster of a team and path cost, as path queries would on demand. */
+    public static void createClusters(ControlPathfinder path, int team, int cost){
+        for(int cy = 0; cy < path.cheight; cy++){
+            for(int cx = 0; cx < path.cwidth; cx++){
+                path.getCreateCluster(team, cost, cx, cy);
+            }
+        }
+    }
+
+    /** Rebuilds clusters on the worker pool, like the pathfinding thread does. */
+    public static void rebuildParallel(ControlPathfinder path, IntSeq complete, IntSeq inner){
+        for(int i = 0; i < complete.size; i++) path.clustersToUpdate.add(complete.items[i]);
+        for(int i = 0; i < inner.size; i++) path.clustersToInnerUpdate.add(inner.items[i]);
+        path.updateClusters();
+    }
+
+    /** Rebuilds clusters one after another on the calling thread. */
+    public static void rebuildSerial(ControlPathfinder path, int team, int cost, IntSeq complete, IntSeq inner){
+        for(int i = 0; i < complete.size; i++){
+            int index = complete.items[i];
+            path.updateCluster(team, cost, index % path.cwidth, index / path.cwidth);
+        }
+
+        for(int i = 0; i < inner.size; i++){
+            int index = inner.items[i];
+            if(!complete.contains(index)){
+                path.updateInnerEdges(team, cost, index % path.cwidth, index / path.cwidth, path.getCluster(team, cost, index));
+            }
+        }
+    }
+
+    /** @return all portals and portal connections of a team and path cost, as text. */
+    public static String dump(ControlPathfinder path, int team, int cost){
+        StringBuilder out = new StringBuilder();
+        for(int index = 0; index < path.cwidth * path.cheight; index++){
+            Cluster cluster = path.getCluster(team, cost, index);
+            out.append(index).append(':');
+            if(cluster == null){
+                out.append(" none\n");
+                continue;
+            }
+
+            for(int dir = 0; dir < 4; dir++){
+                out.append(' ').append(cluster.portals[dir]);
+
+                LongSeq[] connections = cluster.portalConnections[dir];
+                if(connections != null){
+                    for(LongSeq seq : connections){
+                        out.append(seq);
+                    }
+                }
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}